@@ -0,0 +1,21 @@
+package com.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+/**
+ * Runs the JMH benchmarks with the GC profiler, so every result comes with its allocation rate
+ * (gc.alloc.rate.norm is bytes allocated per operation).
+ * Hands the command line to the JMH launcher with -prof gc added, so every JMH option works as usual,
+ * including -l, -h and -lprof, e.g.
+ * java -jar benchmarks/target/benchmarks.jar StreamConsumerBenchmark -p codec=binary
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        String[] withGcProfiler = new String[args.length + 2];
+        withGcProfiler[0] = "-prof";
+        withGcProfiler[1] = "gc";
+        System.arraycopy(args, 0, withGcProfiler, 2, args.length);
+        Main.main(withGcProfiler);
+    }
+}
@@ -0,0 +1,103 @@
+package com.benchmarks;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.buffer.MpscRingBuffer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A bridge buffer between N producers offering messages, like the pub/sub listener threads,
+ * and one flusher draining them in batches with drainTo.
+ * Runs 3 producers by default, change it with -tg N,1.
+ * A producer waits up to a millisecond for room in a full buffer, so the offers are paced by the flusher.
+ * offered and drained count the messages that went through, rejected the offers that timed out.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class BufferBenchmark {
+
+    private static final int DRAIN_SIZE = 2000;
+
+    @Param({"linked", "ring"})
+    private String bufferType;
+
+    @Param("10000")
+    private int capacity;
+
+    private final BufferedMessage message = new BufferedMessage(Messages.body(0), 0);
+    private BlockingQueue<BufferedMessage> buffer;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class OfferCounters {
+
+        public long offered;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            offered = 0;
+            rejected = 0;
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class DrainCounters {
+
+        public long drained;
+        private final List<BufferedMessage> batch = new ArrayList<>(DRAIN_SIZE);
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            drained = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        buffer = "ring".equals(bufferType) ? new MpscRingBuffer<>(capacity) : new LinkedBlockingQueue<>(capacity);
+    }
+
+    @Benchmark
+    @Group("buffer")
+    @GroupThreads(3)
+    public void offer(OfferCounters counters) throws InterruptedException {
+        if (buffer.offer(message, 1, TimeUnit.MILLISECONDS)) {
+            counters.offered++;
+        } else {
+            counters.rejected++;
+        }
+    }
+
+    @Benchmark
+    @Group("buffer")
+    @GroupThreads(1)
+    public void drainTo(DrainCounters counters) {
+        counters.drained += buffer.drainTo(counters.batch, DRAIN_SIZE);
+        counters.batch.clear();
+    }
+}
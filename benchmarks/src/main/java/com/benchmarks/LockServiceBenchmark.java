@@ -0,0 +1,66 @@
+package com.benchmarks;
+
+import com.bridge.service.LockService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LockService#tryLock(byte[], int, int)} under contention, as in the replicated bridge:
+ * every thread walks the same sequence of message IDs, so each ID is won by one thread
+ * and rejected for the others. The store starts empty every iteration, it is never expired.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@Threads(4)
+@State(Scope.Benchmark)
+public class LockServiceBenchmark {
+
+    @Param({"generational", "map"})
+    private String store;
+
+    private LockService lockService;
+
+    @State(Scope.Thread)
+    public static class MessageIds {
+
+        private final byte[] uuid = Messages.uuid(0);
+        private long sequence;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            sequence = 0;
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        lockService = new LockService();
+        var fields = new DirectFieldAccessor(lockService);
+        fields.setPropertyValue("dedupStoreType", store);
+        fields.setPropertyValue("initialCapacity", 256);
+        lockService.init();
+    }
+
+    @Benchmark
+    public boolean tryLock(MessageIds ids) {
+        Messages.setId(ids.uuid, 0, ids.sequence++);
+        return lockService.tryLock(ids.uuid, 0, ids.uuid.length);
+    }
+}
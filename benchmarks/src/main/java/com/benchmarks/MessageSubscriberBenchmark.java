@@ -0,0 +1,77 @@
+package com.benchmarks;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.buffer.MpscRingBuffer;
+import com.bridge.listener.MessageSubscriber;
+import com.bridge.service.LockService;
+import com.bridge.spill.SpillLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.redis.connection.DefaultMessage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MessageSubscriber#onMessage} on a single thread: message_id scan, lock and offer to the buffer.
+ * The buffered message is polled right away, so the buffer never fills and the spill log stays out of it.
+ * Every message has a new message_id, written into the same body in place.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Thread)
+public class MessageSubscriberBenchmark {
+
+    private static final byte[] CHANNEL = "messages:published".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"linked", "ring"})
+    private String bufferType;
+
+    private final byte[] body = Messages.body(0);
+    private final DefaultMessage message = new DefaultMessage(CHANNEL, body);
+    private long sequence;
+
+    private BlockingQueue<BufferedMessage> buffer;
+    private MessageSubscriber subscriber;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        var lockService = new LockService();
+        var lockFields = new DirectFieldAccessor(lockService);
+        lockFields.setPropertyValue("dedupStoreType", "generational");
+        lockFields.setPropertyValue("initialCapacity", 256);
+        lockService.init();
+
+        var spillLog = new SpillLog(new SimpleMeterRegistry());
+        new DirectFieldAccessor(spillLog).setPropertyValue("enabled", false);
+
+        buffer = "ring".equals(bufferType) ? new MpscRingBuffer<>(1024) : new LinkedBlockingQueue<>(1024);
+        subscriber = new MessageSubscriber(new ArrayList<>(), buffer, lockService, spillLog);
+        sequence = 0;
+    }
+
+    @Benchmark
+    public BufferedMessage onMessage() {
+        Messages.setId(body, Messages.ID_OFFSET, sequence++);
+        subscriber.onMessage(message, null);
+        return buffer.poll();
+    }
+}
@@ -0,0 +1,41 @@
+package com.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Message bodies in the format the producer publishes, {"message_id":"UUID"}.
+ * The message_id of a body can be rewritten in place, so the benchmarks feed unique IDs without allocating.
+ */
+final class Messages {
+
+    static final String UUID_TEMPLATE = "00000000-0000-4000-8000-000000000000";
+    // Offset of the UUID in a body
+    static final int ID_OFFSET = "{\"message_id\":\"".length();
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private Messages() {
+    }
+
+    static byte[] body(long sequence) {
+        byte[] body = ("{\"message_id\":\"" + UUID_TEMPLATE + "\"}").getBytes(StandardCharsets.UTF_8);
+        setId(body, ID_OFFSET, sequence);
+        return body;
+    }
+
+    static byte[] uuid(long sequence) {
+        byte[] uuid = UUID_TEMPLATE.getBytes(StandardCharsets.US_ASCII);
+        setId(uuid, 0, sequence);
+        return uuid;
+    }
+
+    /**
+     * Writes the sequence into the last 12 hex digits of the UUID at the given offset.
+     */
+    static void setId(byte[] target, int uuidOffset, long sequence) {
+        for (int i = uuidOffset + 35; i >= uuidOffset + 24; i--) {
+            target[i] = HEX[(int) (sequence & 0xF)];
+            sequence >>>= 4;
+        }
+    }
+}
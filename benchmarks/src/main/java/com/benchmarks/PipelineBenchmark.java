@@ -0,0 +1,183 @@
+package com.benchmarks;
+
+import com.bridge.batchemitter.BatchEmitter;
+import com.bridge.batchemitter.ScriptedBatchAppender;
+import com.bridge.batchemitter.StreamPayloadEncoder;
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.leader.LeaderElection;
+import com.bridge.leader.ShadowWindow;
+import com.bridge.listener.MessageSubscriber;
+import com.bridge.service.BatchClaimService;
+import com.bridge.service.LockService;
+import com.bridge.spill.SpillLog;
+import com.common.transport.InMemoryTransport;
+import com.common.transport.StreamShards;
+import com.consumer.config.AppConfig;
+import com.consumer.listener.BatchStreamContainer;
+import com.consumer.listener.StreamConsumer;
+import com.consumer.listener.SubscriptionManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.listener.ChannelTopic;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The whole pipeline in one JVM on an {@link InMemoryTransport}: pub/sub into a {@link MessageSubscriber},
+ * the {@link BatchEmitter} appending to the input stream, and the {@link SubscriptionManager}'s batch subscriptions
+ * running the {@link StreamConsumer} and writing the output stream. Without Redis in the way this measures
+ * the Java side only. Every invocation publishes a batch and waits until all of it reached the output stream.
+ * With several shards the batch is split over them and the subscriptions read their share of the shards.
+ * Scores are per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    private static final int BATCH_SIZE = 1000;
+    private static final String CHANNEL = "messages:published";
+    private static final String OUTPUT = "messages:processed";
+    private static final String GROUP = "messages-published-group";
+
+    @Param({"1", "4"})
+    private int subscriptions;
+
+    // Input stream shards, see StreamShards
+    @Param({"1", "4"})
+    private int shards;
+
+    private InMemoryTransport transport;
+    private List<String> streamKeys;
+    private BatchEmitter batchEmitter;
+    private SubscriptionManager subscriptionManager;
+    private GenericApplicationContext context;
+    private ExecutorService executor;
+
+    private final List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+    private long sequence;
+
+    @Setup
+    public void setUp() {
+        // The cap keeps the streams from growing for the whole run
+        transport = new InMemoryTransport(100_000);
+        streamKeys = StreamShards.keys(CHANNEL, shards);
+        streamKeys.forEach(streamKey -> transport.createGroup(streamKey, GROUP));
+        executor = Executors.newCachedThreadPool();
+        var meterRegistry = new SimpleMeterRegistry();
+
+        // Bridge, one replicated listener
+        var lockService = new LockService();
+        var lockFields = new DirectFieldAccessor(lockService);
+        lockFields.setPropertyValue("dedupStoreType", "generational");
+        lockFields.setPropertyValue("initialCapacity", 256);
+        lockService.init();
+        var spillLog = new SpillLog(meterRegistry);
+        new DirectFieldAccessor(spillLog).setPropertyValue("enabled", false);
+        List<BlockingQueue<BufferedMessage>> bufferContainer = new ArrayList<>();
+        var subscriber = new MessageSubscriber(bufferContainer, new LinkedBlockingQueue<>(10_000), lockService, spillLog);
+        subscriber.init();
+        transport.subscribe(CHANNEL, subscriber::onMessage);
+
+        var payloadEncoder = new StreamPayloadEncoder();
+        new DirectFieldAccessor(payloadEncoder).setPropertyValue("codecName", "json");
+        payloadEncoder.init();
+        // Leader election off, the single instance leads without a lease
+        var leaderElection = new LeaderElection(null, event -> { });
+        new DirectFieldAccessor(leaderElection).setPropertyValue("enabled", false);
+        leaderElection.start();
+        // Script emit mode and distributed dedup stay off, they need Redis
+        batchEmitter = new BatchEmitter(bufferContainer, transport, new ChannelTopic(CHANNEL), spillLog, new ShadowWindow(),
+                null, leaderElection, new BatchClaimService(null, null), new ScriptedBatchAppender(null, null, null, null, null, null),
+                payloadEncoder, meterRegistry);
+        var emitterFields = new DirectFieldAccessor(batchEmitter);
+        emitterFields.setPropertyValue("bridgeGroupSize", 1);
+        emitterFields.setPropertyValue("batchDrainSize", 2000);
+        emitterFields.setPropertyValue("batchLingerMs", 1L);
+        emitterFields.setPropertyValue("envelopeSize", 1);
+        emitterFields.setPropertyValue("streamShards", shards);
+        emitterFields.setPropertyValue("emitting", true);
+        batchEmitter.init();
+        batchEmitter.start();
+
+        // Consumer, batch mode subscriptions
+        context = new GenericApplicationContext();
+        context.registerBean("streamMessageSubscription", AppConfig.ConsumerSubscription.class, () -> {
+            var streamConsumer = new StreamConsumer(transport, meterRegistry);
+            new DirectFieldAccessor(streamConsumer).setPropertyValue("outputStreamKey", OUTPUT);
+            var container = new BatchStreamContainer(transport, Consumer.from(GROUP, streamConsumer.getConsumerId()),
+                    streamKeys, 500, Duration.ofMillis(100), streamConsumer);
+            container.start(executor);
+            return new AppConfig.ConsumerSubscription(streamConsumer.getConsumerId(), container);
+        }, definition -> definition.setScope(ConfigurableBeanFactory.SCOPE_PROTOTYPE));
+        context.refresh();
+        // The pending reclaimer is only needed to retire subscriptions
+        subscriptionManager = new SubscriptionManager(context, transport, null);
+        var managerFields = new DirectFieldAccessor(subscriptionManager);
+        managerFields.setPropertyValue("consumerGroupSize", subscriptions);
+        managerFields.setPropertyValue("activeSubscriptionKey", "active-subscriptions");
+        managerFields.setPropertyValue("streamKey", CHANNEL);
+        managerFields.setPropertyValue("streamShards", shards);
+        subscriptionManager.registerConsumers();
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscriptionManager.stop();
+        batchEmitter.stop();
+        executor.shutdownNow();
+        context.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public long publishAndProcess() {
+        batch.clear();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(Messages.body(sequence++));
+        }
+        transport.publish(CHANNEL, batch);
+        for (int waits = 1; transport.appended(OUTPUT) < sequence; waits++) {
+            // Entries the cap dropped before they were processed never reach the output
+            if (waits % 10_000 == 0) {
+                failIfInputWasDropped();
+            }
+            LockSupport.parkNanos(10_000);
+        }
+        return sequence;
+    }
+
+    private void failIfInputWasDropped() {
+        long dropped = streamKeys.stream().mapToLong(transport::dropped).sum();
+        if (dropped > 0) {
+            throw new IllegalStateException("The stream cap dropped " + dropped + " unprocessed entries, raise it");
+        }
+    }
+}
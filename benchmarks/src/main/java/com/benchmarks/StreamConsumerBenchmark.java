@@ -0,0 +1,83 @@
+package com.benchmarks;
+
+import com.common.codec.Envelope;
+import com.common.codec.MessageCodecs;
+import com.common.transport.InMemoryTransport;
+import com.consumer.listener.StreamConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link StreamConsumer#onMessages} on a batch read by XREADGROUP: decoding the payloads
+ * and building the output records, including the metrics recorded per entry.
+ * Scores are per message, with envelopes a stream entry carries envelopeSize messages.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamConsumerBenchmark {
+
+    // redis.consumer.batch-size
+    private static final int BATCH_SIZE = 500;
+
+    @Param({"json", "binary"})
+    private String codec;
+
+    @Param({"1", "10"})
+    private int envelopeSize;
+
+    private StreamConsumer streamConsumer;
+    private final List<MapRecord<String, String, byte[]>> records = new ArrayList<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        // The transport is only used to write outputs in record mode
+        streamConsumer = new StreamConsumer(new InMemoryTransport(), new SimpleMeterRegistry());
+        new DirectFieldAccessor(streamConsumer).setPropertyValue("outputStreamKey", "messages:processed");
+
+        List<byte[]> payloads = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            payloads.add(MessageCodecs.forName(codec).encode(MessageCodecs.JSON.decode(Messages.body(i))));
+        }
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < BATCH_SIZE; i += envelopeSize) {
+            Map<String, byte[]> entry = envelopeSize == 1
+                    ? Map.of("body", payloads.get(i))
+                    : Map.of(Envelope.FIELD_NAME, Envelope.pack(payloads, i, Math.min(i + envelopeSize, BATCH_SIZE)));
+            records.add(StreamRecords.newRecord()
+                    .in("messages:published")
+                    .withId(RecordId.of(now, i))
+                    .ofMap(entry));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<MapRecord<String, String, String>> onMessages() {
+        return streamConsumer.onMessages(records);
+    }
+}
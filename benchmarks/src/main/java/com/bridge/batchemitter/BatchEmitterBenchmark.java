@@ -0,0 +1,71 @@
+package com.bridge.batchemitter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds the stream entries of a drained batch the way BatchEmitter.flushBufferToStream does before the XADDs:
+ * the bodies are encoded with the stream codec and turned into one entry each, or packed into envelopes.
+ * Lives in the package of the {@link BatchEmitter}, so it calls its package-private toEntry.
+ * Scores are per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchEmitterBenchmark {
+
+    // redis.batch-drain-size
+    private static final int BATCH_SIZE = 2000;
+    private static final byte[] STREAM_KEY = "messages:published".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"json", "binary"})
+    private String codec;
+
+    @Param({"1", "10"})
+    private int envelopeSize;
+
+    private StreamPayloadEncoder payloadEncoder;
+    private final List<byte[]> batch = new ArrayList<>(BATCH_SIZE);
+
+    @Setup
+    public void setUp() {
+        payloadEncoder = new StreamPayloadEncoder();
+        new DirectFieldAccessor(payloadEncoder).setPropertyValue("codecName", codec);
+        payloadEncoder.init();
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            // The format the producer publishes
+            batch.add(("{\"message_id\":\"" + new UUID(0x4000L, 0x8000000000000000L | i) + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void buildEntries(Blackhole blackhole) {
+        List<byte[]> payloads = batch.stream().map(payloadEncoder::encode).toList();
+        byte[] ingress = Long.toString(System.currentTimeMillis()).getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < payloads.size(); i += envelopeSize) {
+            blackhole.consume(BatchEmitter.toEntry(STREAM_KEY, payloads, i, envelopeSize, ingress));
+        }
+    }
+}
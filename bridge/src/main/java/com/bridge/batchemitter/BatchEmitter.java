@@ -1,47 +1,81 @@
 package com.bridge.batchemitter;
 
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.leader.LeaderElection;
+import com.bridge.leader.LeadershipAcquiredEvent;
+import com.bridge.leader.LeadershipRevokedEvent;
+import com.bridge.leader.ShadowWindow;
+import com.bridge.leader.TakeoverReconciler;
+import com.bridge.listener.MessageIdScanner;
+import com.bridge.service.BatchClaimService;
+import com.bridge.spill.SpillLog;
+import com.common.codec.Envelope;
+import com.common.metrics.PipelineLatency;
+import com.common.transport.MessageTransport;
+import com.common.transport.StreamShards;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import jakarta.annotation.PostConstruct;
+import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.connection.stream.RecordId;
-import org.springframework.data.redis.connection.stream.StreamRecords;
-import org.springframework.data.redis.core.RedisCallback;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-import static com.bridge.config.Constants.BATCH_DRAIN_RATE_MS;
+import static com.bridge.config.Constants.BUFFER_CONTAINER_BEAN_NAME;
+import static com.bridge.config.Constants.FLUSHER_IDLE_POLL_MS;
+import static com.bridge.config.Constants.FLUSHER_SHUTDOWN_TIMEOUT_MS;
+import static com.bridge.config.Constants.SPILL_REPLAY_IDLE_MS;
 
 /**
  * Component responsible for draining in-memory message buffers and publishing them
- * to Redis Streams in batches using pipelined execution.
+ * to Redis Streams in batches, appended in one round trip through the {@link MessageTransport}.
+ * Each buffer has its own flusher that sends a batch on whichever comes first:
+ * {@link #batchDrainSize} messages are collected or the oldest message in the batch
+ * has waited {@link #batchLingerMs}, similar to Kafka's linger.ms.
+ * Implements SmartLifecycle so the flushers start once all listeners registered
+ * their buffers, and so the remaining messages are flushed on shutdown.
  */
 @Component
 @RequiredArgsConstructor
 @Slf4j
-public class BatchEmitter {
+public class BatchEmitter implements SmartLifecycle {
+
+    private static final byte[] BODY_FIELD = "body".getBytes(StandardCharsets.UTF_8);
 
     /**
        Container that stores all the buffers.
        Each listener register his own prototype buffer bean
-       Each listener register his own prototype buffer bean
        The number of listeners depends on {@link #bridgeGroupSize}
      */
-    @Qualifier("bufferContainer")
-    private final List<BlockingQueue<String>> bufferContainer;
-    private final RedisTemplate<String, String> redisTemplate;
+    @Qualifier(BUFFER_CONTAINER_BEAN_NAME)
+    private final List<BlockingQueue<BufferedMessage>> bufferContainer;
+    private final MessageTransport transport;
     private final ChannelTopic topic;
+    private final SpillLog spillLog;
+    private final ShadowWindow shadowWindow;
+    private final TakeoverReconciler takeoverReconciler;
+    private final LeaderElection leaderElection;
+    private final BatchClaimService batchClaimService;
+    private final ScriptedBatchAppender scriptedBatchAppender;
+    private final StreamPayloadEncoder payloadEncoder;
+    private final MeterRegistry meterRegistry;
 
     @Value("${redis.bridge-group.size}")
     private int bridgeGroupSize;
@@ -49,48 +83,355 @@ public class BatchEmitter {
     @Value("${redis.batch-drain-size}")
     private int batchDrainSize;
 
+    @Value("${redis.batch-linger.ms}")
+    private long batchLingerMs;
+
+    @Value("${redis.envelope.size}")
+    private int envelopeSize;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
     private ExecutorService executorService;
 
+    // Runs the takeovers one at a time, off the thread that renews the lease
+    private ExecutorService takeoverExecutor;
+
+    // Keys of the stream shards, only the stream itself when it is not sharded
+    private byte[][] streamKeys;
+
+    private Timer bufferLatency;
+
+    private volatile boolean isRunning = false;
+
+    // True while this instance is the leader, switched under the shadowWindow monitor
+    @Setter(AccessLevel.PACKAGE)
+    private volatile boolean emitting = false;
+
     @PostConstruct
     public void init() {
-        executorService = Executors.newFixedThreadPool(bridgeGroupSize);
+        streamKeys = StreamShards.keys(topic.getTopic(), streamShards).stream()
+                .map(key -> key.getBytes(StandardCharsets.UTF_8))
+                .toArray(byte[][]::new);
+        if (streamKeys.length > 1 && scriptedBatchAppender.isEnabled()) {
+            throw new IllegalStateException("redis.emit.mode=script appends to a single stream, set redis.stream.shards=1");
+        }
+        bufferLatency = PipelineLatency.timer(meterRegistry, PipelineLatency.HOP_BUFFER);
+        takeoverExecutor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "leader-takeover"));
+    }
+
+    // Starts one flusher per buffer
+    @Override
+    public void start() {
+        isRunning = true;
+        executorService = Executors.newFixedThreadPool(Math.max(bridgeGroupSize, bufferContainer.size()) + 1);
+        bufferContainer.forEach(que -> executorService.submit(() -> runFlusher(que)));
+        executorService.submit(this::runSpillReplay);
+    }
+
+    /**
+     * Waits for the flushers to finish their batches, interrupting them after FLUSHER_SHUTDOWN_TIMEOUT_MS,
+     * then flushes what is left in the buffers. The buffers are single-consumer, so if a flusher is still running
+     * after that they are left as they are.
+     */
+    @Override
+    public void stop() {
+        isRunning = false;
+        takeoverExecutor.shutdownNow();
+        executorService.shutdown();
+        try {
+            if (!executorService.awaitTermination(FLUSHER_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                executorService.shutdownNow();
+                if (!executorService.awaitTermination(FLUSHER_SHUTDOWN_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                    log.warn("Flushers did not stop, not flushing the {} buffered messages",
+                            bufferContainer.stream().mapToInt(BlockingQueue::size).sum());
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // Flush whatever the listeners buffered before they were stopped,
+        // the flushers are gone so this thread is the buffers' only consumer
+        List<BufferedMessage> batch = new ArrayList<>();
+        List<byte[]> bodies = new ArrayList<>();
+        int lost = 0;
+        for (BlockingQueue<BufferedMessage> que : bufferContainer) {
+            while (que.drainTo(batch, batchDrainSize) > 0) {
+                lost += flushOrSpill(batch, bodies);
+                batch.clear();
+            }
+        }
+        if (lost > 0) {
+            log.error("Lost {} buffered messages on shutdown, they could be neither written nor spilled", lost);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    // Stops after the listener container, so nothing is buffered after the final flush
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 1;
+    }
+
+    private void runFlusher(BlockingQueue<BufferedMessage> buffer) {
+        List<BufferedMessage> batch = new ArrayList<>(batchDrainSize);
+        List<byte[]> bodies = new ArrayList<>(batchDrainSize);
+        while (isRunning) {
+            try {
+                // A batch that can't be written is already out of the buffer, it goes to the spill log
+                if (collectBatch(buffer, batch)) {
+                    flushOrSpill(batch, bodies);
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by stop while collecting, the messages already taken from the buffer are not dropped
+                flushOrSpill(batch, bodies);
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Flusher failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes or shadows a batch, or spills it if it can't be written.
+     * @return the number of messages that were neither written nor spilled
+     */
+    private int flushOrSpill(List<BufferedMessage> batch, List<byte[]> bodies) {
+        if (batch.isEmpty() || emitAndRecord(batch, bodies)) return 0;
+        int spilled = (int) batch.stream().filter(spillLog::append).count();
+        log.warn("Could not write a batch of {} messages, spilled {} of them", batch.size(), spilled);
+        return batch.size() - spilled;
+    }
+
+    /**
+     * Hands the takeover to the takeover thread, the event is published on the lease renewal thread,
+     * so scanning the stream never delays the renewals.
+     */
+    @EventListener
+    public void onLeadershipAcquired(LeadershipAcquiredEvent event) {
+        takeoverExecutor.execute(this::takeOver);
+    }
+
+    /**
+     * Emits the shadowed messages the previous leader did not write, then switches to emitting.
+     * Batches shadowed while the first part runs are reconciled under the lock,
+     * so no batch falls between the shadow and the stream.
+     * If leadership was lost in the meantime the instance stays a standby, messages that could not be
+     * written go back to the shadow window for the next takeover.
+     */
+    void takeOver() {
+        long since = shadowWindow.oldestTimestamp();
+        emitOrReshadow(takeoverReconciler.notYetWritten(shadowWindow.drain(), since));
+        synchronized (shadowWindow) {
+            List<byte[]> rest = shadowWindow.drain();
+            emitOrReshadow(takeoverReconciler.notYetWritten(rest, since < 0 ? System.currentTimeMillis() : since));
+            emitting = leaderElection.isLeader();
+        }
+    }
+
+    private void emitOrReshadow(List<byte[]> missing) {
+        if (!flushBufferToStream(missing, 0)) {
+            log.warn("Takeover could not write {} shadowed messages, keeping them for the next takeover", missing.size());
+            shadowWindow.record(missing);
+        }
     }
 
+    @EventListener
+    public void onLeadershipRevoked(LeadershipRevokedEvent event) {
+        synchronized (shadowWindow) {
+            emitting = false;
+        }
+    }
 
-    // Job that drains the buffers in parallel
-    @Scheduled(fixedDelay = BATCH_DRAIN_RATE_MS)
-    public void drainBuffers() {
-        bufferContainer.forEach(que -> executorService.submit(() -> flushBufferToStream(que)));
+    /**
+     * Emits or shadows the bodies of the batch, the messages that were written are timed.
+     * @param bodies reused list for the bodies of the batch
+     * @return false if the batch was neither written nor shadowed
+     */
+    private boolean emitAndRecord(List<BufferedMessage> batch, List<byte[]> bodies) {
+        try {
+            batch.forEach(message -> bodies.add(message.body()));
+            if (shadowIfStandby(bodies)) return true;
+            if (!flushBufferToStream(bodies, batch.get(0).ingressMillis())) return false;
+            recordBufferLatency(batch);
+            return true;
+        } finally {
+            bodies.clear();
+        }
     }
 
-    private void flushBufferToStream(BlockingQueue<String> buffer) {
-        List<String> batch = new ArrayList<>();
-        buffer.drainTo(batch, batchDrainSize);
+    /**
+     * Records the time from receiving each message to writing it in the {@link PipelineLatency#HOP_BUFFER} timer,
+     * which is what {@link #batchLingerMs} and {@link #batchDrainSize} trade against the number of round trips.
+     */
+    private void recordBufferLatency(List<BufferedMessage> batch) {
+        long now = System.nanoTime();
+        batch.forEach(message -> bufferLatency.record(now - message.ingressNanos(), TimeUnit.NANOSECONDS));
+    }
 
-        if (batch.isEmpty()) return;
+    /**
+     * Only the leader emits, and only while {@link LeaderElection#holdsLease()}. On a standby, or on a leader
+     * whose lease ran out, the batch goes to the {@link ShadowWindow} instead, for the next takeover to reconcile.
+     * @return true if the batch was shadowed, because this instance is not the leader or its lease ran out
+     */
+    private boolean shadowIfStandby(List<byte[]> batch) {
+        if (!emitting || !leaderElection.holdsLease()) {
+            synchronized (shadowWindow) {
+                if (!emitting || !leaderElection.holdsLease()) {
+                    shadowWindow.record(batch);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
 
+    /**
+     * Replays the {@link SpillLog} into the stream in order, once the buffers have no backlog left.
+     * A batch is only removed from the log after it was written successfully.
+     * Replayed messages are timed from their original receipt.
+     */
+    private void runSpillReplay() {
+        while (isRunning) {
+            try {
+                if (!emitting || spillLog.isEmpty() || bufferContainer.stream().anyMatch(que -> !que.isEmpty())) {
+                    Thread.sleep(SPILL_REPLAY_IDLE_MS);
+                    continue;
+                }
+                List<BufferedMessage> batch = spillLog.readBatch(batchDrainSize);
+                List<byte[]> bodies = batch.stream().map(BufferedMessage::body).toList();
+                if (flushBufferToStream(bodies, batch.isEmpty() ? 0 : batch.get(0).ingressMillis())) {
+                    spillLog.acknowledge();
+                    recordBufferLatency(batch);
+                } else {
+                    Thread.sleep(SPILL_REPLAY_IDLE_MS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("Spill replay failed", e);
+            }
+        }
+    }
+
+    /**
+     * Waits for the first message, then keeps collecting until the batch is full
+     * or the linger time since the first message has passed.
+     * @return true if the batch is not empty
+     */
+    private boolean collectBatch(BlockingQueue<BufferedMessage> buffer, List<BufferedMessage> batch) throws InterruptedException {
+        BufferedMessage first = buffer.poll(FLUSHER_IDLE_POLL_MS, TimeUnit.MILLISECONDS);
+        if (first == null) return false;
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(batchLingerMs);
+        while (batch.size() < batchDrainSize) {
+            buffer.drainTo(batch, batchDrainSize - batch.size());
+            if (batch.size() >= batchDrainSize) break;
+
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) break;
+
+            BufferedMessage next = buffer.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) break;
+            batch.add(next);
+        }
+        return true;
+    }
+
+    /**
+     * Builds the stream entry for the payloads starting at from: the body itself with an entrySize of 1,
+     * otherwise an {@link Envelope} of up to entrySize payloads.
+     * @param ingress the {@link PipelineLatency#INGRESS_FIELD} value, null for none
+     */
+    static MapRecord<byte[], byte[], byte[]> toEntry(byte[] streamKey, List<byte[]> payloads, int from, int entrySize,
+                                                    byte[] ingress) {
+        Map<byte[], byte[]> entry = new LinkedHashMap<>(4);
+        if (entrySize == 1) {
+            entry.put(BODY_FIELD, payloads.get(from));
+        } else {
+            entry.put(Envelope.FIELD, Envelope.pack(payloads, from, Math.min(from + entrySize, payloads.size())));
+        }
+        if (ingress != null) {
+            entry.put(PipelineLatency.INGRESS_FIELD, ingress);
+        }
+        return MapRecord.create(streamKey, entry);
+    }
+
+    /**
+     * Splits the batch by the shard of each message_id, keeping the order within a shard.
+     * Messages without a message_id go to the first shard.
+     */
+    private List<List<byte[]>> partition(List<byte[]> batch) {
+        if (streamKeys.length == 1) return List.of(batch);
+        List<List<byte[]>> shards = new ArrayList<>(streamKeys.length);
+        for (int shard = 0; shard < streamKeys.length; shard++) {
+            shards.add(new ArrayList<>(batch.size() / streamKeys.length + 1));
+        }
+        for (byte[] body : batch) {
+            long messageId = MessageIdScanner.scan(body);
+            int shard = messageId == MessageIdScanner.NOT_FOUND
+                    ? 0
+                    : StreamShards.shardOf(MessageIdScanner.hash(body, messageId), streamKeys.length);
+            shards.get(shard).add(body);
+        }
+        return shards;
+    }
+
+    /**
+     * Refuses to write once the lease can no longer be trusted, another instance may have taken over.
+     * In script emit mode the batch is written by the {@link ScriptedBatchAppender} instead.
+     * Otherwise every message goes to the shard of its message_id, see {@link StreamShards}, and in distributed
+     * dedup mode only the messages this instance claimed through the {@link BatchClaimService} are written.
+     * With an {@link #envelopeSize} above 1 every {@link Envelope} entry carries that many messages,
+     * so the consumer groups read, track and acknowledge one entry per envelope.
+     * The entries of all shards are appended in the same round trip, each carrying the receive time of the
+     * oldest message in the {@link PipelineLatency#INGRESS_FIELD}, except the shadowed messages written on takeover.
+     * @param ingressMillis receive time of the oldest message, written into every entry, 0 for unknown
+     * @return false if nothing was written or the pipeline failed as a whole
+     */
+    private boolean flushBufferToStream(List<byte[]> batch, long ingressMillis) {
+        if (batch.isEmpty()) return true;
+        if (!leaderElection.holdsLease()) {
+            log.warn("Not writing {} messages, the leader lease is not held", batch.size());
+            return false;
+        }
         try {
-            redisTemplate.executePipelined((RedisCallback<?>) (redisConnection) -> {
-                for (String msg : batch) {
-                    try {
-                        Map<byte[], byte[]> serializedFields = Map.of(
-                                "body".getBytes(StandardCharsets.UTF_8), msg.getBytes());
-
-                        var record = StreamRecords
-                                .newRecord()
-                                .in(topic.getTopic().getBytes(StandardCharsets.UTF_8))
-                                .ofMap(serializedFields)
-                                .withId(RecordId.autoGenerate());
-
-                        redisConnection.streamCommands().xAdd(record);
-                    } catch (Exception e) {
-                        log.warn("Skipping message due to error during pipelined write: {}", e.getMessage());
-                    }
+            if (scriptedBatchAppender.isEnabled()) {
+                scriptedBatchAppender.append(batch, BODY_FIELD, envelopeSize, ingressMillis);
+                return true;
+            }
+            List<List<byte[]>> shards = partition(batch);
+            int entrySize = Math.max(1, envelopeSize);
+            byte[] ingress = ingressMillis > 0 ? Long.toString(ingressMillis).getBytes(StandardCharsets.US_ASCII) : null;
+            List<MapRecord<byte[], byte[], byte[]>> entries = new ArrayList<>(batch.size() / entrySize + shards.size());
+            for (int shard = 0; shard < shards.size(); shard++) {
+                // A message_id always hashes to the same shard, so every instance claims it in that shard's hashes
+                List<byte[]> claimed = batchClaimService.isEnabled()
+                        ? batchClaimService.claim(new String(streamKeys[shard], StandardCharsets.UTF_8), shards.get(shard))
+                        : shards.get(shard);
+                List<byte[]> payloads = claimed.stream().map(payloadEncoder::encode).toList();
+                for (int i = 0; i < payloads.size(); i += entrySize) {
+                    entries.add(toEntry(streamKeys[shard], payloads, i, entrySize, ingress));
                 }
-                return null;
-            });
+            }
+            if (entries.isEmpty()) return true;
+            transport.append(entries);
+            return true;
         } catch (Exception e) {
             log.error("Failed to flush buffer to Redis stream", e);
+            return false;
         }
     }
 }
@@ -0,0 +1,145 @@
+package com.bridge.batchemitter;
+
+import com.bridge.leader.LeaderElection;
+import com.bridge.listener.MessageIdScanner;
+import com.bridge.service.BatchClaimService;
+import com.common.codec.Envelope;
+import com.common.metrics.PipelineLatency;
+import com.common.retention.StreamRetentionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.bridge.config.Constants.EMIT_MODE_SCRIPT;
+import static com.bridge.config.Constants.LOCK_TTL_MS;
+
+/**
+ * Writes a whole batch with one EVALSHA of scripts/append-batch.lua.
+ * The script skips message IDs that were appended before, XADDs the rest, packed into envelopes if requested, and trims the stream
+ * approximately to the cutoff of the {@link StreamRetentionService}, all atomically on the server. The dedup window lives in the same claim hashes
+ * as the {@link BatchClaimService}, so it is shared by all bridge instances.
+ * The script is loaded with SCRIPT LOAD on first use and reloaded if Redis lost it.
+ * Active with redis.emit.mode=script.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ScriptedBatchAppender {
+
+    private static final String SCRIPT_PATH = "scripts/append-batch.lua";
+    private static final byte[] EMPTY = new byte[0];
+    private static final byte[] MINID = "MINID".getBytes(StandardCharsets.US_ASCII);
+    // Stream and the three claim buckets
+    private static final int KEY_COUNT = 4;
+    // TTL, owner, trim strategy, trim threshold, body field, envelope size, envelope field, ingress field and ingress time
+    private static final int HEADER_ARG_COUNT = 9;
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ChannelTopic topic;
+    private final BatchClaimService batchClaimService;
+    private final LeaderElection leaderElection;
+    private final StreamRetentionService streamRetentionService;
+    private final StreamPayloadEncoder payloadEncoder;
+
+    @Value("${redis.emit.mode}")
+    private String emitMode;
+
+    private byte[] script;
+    private volatile byte[] scriptSha;
+
+    public boolean isEnabled() {
+        return EMIT_MODE_SCRIPT.equals(emitMode);
+    }
+
+    /**
+     * @param envelopeSize  messages packed into one {@link Envelope} entry, 1 appends every message as its own entry
+     * @param ingressMillis receive time of the oldest message, written into every entry, 0 for unknown
+     * @return the number of messages appended, messages appended before are not counted
+     */
+    public long append(List<byte[]> batch, byte[] bodyField, int envelopeSize, long ingressMillis) {
+        byte[][] keysAndArgs = keysAndArgs(batch, bodyField, envelopeSize, ingressMillis);
+        return redisTemplate.execute((RedisCallback<Long>) connection -> {
+            var scripting = connection.scriptingCommands();
+            if (scriptSha == null) {
+                scriptSha = scripting.scriptLoad(script()).getBytes(StandardCharsets.UTF_8);
+            }
+            try {
+                return scripting.evalSha(scriptSha, ReturnType.INTEGER, KEY_COUNT, keysAndArgs);
+            } catch (DataAccessException e) {
+                if (!isNoScript(e)) throw e;
+                log.info("Append script was flushed from Redis, loading it again");
+                scriptSha = scripting.scriptLoad(script()).getBytes(StandardCharsets.UTF_8);
+                return scripting.evalSha(scriptSha, ReturnType.INTEGER, KEY_COUNT, keysAndArgs);
+            }
+        });
+    }
+
+    private byte[][] keysAndArgs(List<byte[]> batch, byte[] bodyField, int envelopeSize, long ingressMillis) {
+        byte[][] keysAndArgs = new byte[KEY_COUNT + HEADER_ARG_COUNT + batch.size() * 2][];
+        keysAndArgs[0] = topic.getTopic().getBytes(StandardCharsets.UTF_8);
+        List<String> buckets = batchClaimService.bucketKeys(topic.getTopic());
+        for (int i = 0; i < buckets.size(); i++) {
+            keysAndArgs[1 + i] = buckets.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        keysAndArgs[4] = ascii(LOCK_TTL_MS);
+        keysAndArgs[5] = leaderElection.getInstanceId().getBytes(StandardCharsets.UTF_8);
+        RecordId cutoff = streamRetentionService.getCutoff();
+        if (cutoff != null) {
+            keysAndArgs[6] = MINID;
+            keysAndArgs[7] = cutoff.getValue().getBytes(StandardCharsets.US_ASCII);
+        } else {
+            keysAndArgs[6] = EMPTY;
+            keysAndArgs[7] = EMPTY;
+        }
+        keysAndArgs[8] = bodyField;
+        keysAndArgs[9] = ascii(envelopeSize);
+        keysAndArgs[10] = Envelope.FIELD;
+        keysAndArgs[11] = PipelineLatency.INGRESS_FIELD;
+        keysAndArgs[12] = ingressMillis > 0 ? ascii(ingressMillis) : EMPTY;
+
+        int i = KEY_COUNT + HEADER_ARG_COUNT;
+        for (byte[] body : batch) {
+            long messageId = MessageIdScanner.scan(body);
+            keysAndArgs[i++] = messageId == MessageIdScanner.NOT_FOUND ? EMPTY
+                    : Arrays.copyOfRange(body, MessageIdScanner.from(messageId), MessageIdScanner.to(messageId));
+            keysAndArgs[i++] = payloadEncoder.encode(body);
+        }
+        return keysAndArgs;
+    }
+
+    private byte[] script() {
+        if (script == null) {
+            try (var in = new ClassPathResource(SCRIPT_PATH).getInputStream()) {
+                script = in.readAllBytes();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read " + SCRIPT_PATH, e);
+            }
+        }
+        return script;
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (; e != null; e = e.getCause()) {
+            if (e.getMessage() != null && e.getMessage().contains("NOSCRIPT")) return true;
+        }
+        return false;
+    }
+
+    private static byte[] ascii(long value) {
+        return Long.toString(value).getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,41 @@
+package com.bridge.batchemitter;
+
+import com.common.codec.MessageCodec;
+import com.common.codec.MessageCodecs;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Encodes message bodies with the codec selected by redis.stream.codec before they are written to the stream.
+ * Bodies travel as the raw pub/sub bytes of the JSON published by the producer, so with the JSON codec
+ * they are written as they are, under the pre-encoded stream key and field name of the {@link BatchEmitter}.
+ * A body the codec cannot represent is written unchanged, readers detect the codec per payload.
+ */
+@Component
+@Slf4j
+public class StreamPayloadEncoder {
+
+    @Value("${redis.stream.codec}")
+    private String codecName;
+
+    private MessageCodec codec;
+
+    @PostConstruct
+    public void init() {
+        codec = MessageCodecs.forName(codecName);
+    }
+
+    public byte[] encode(byte[] body) {
+        if (codec == MessageCodecs.JSON) return body;
+        try {
+            return codec.encode(MessageCodecs.JSON.decode(body));
+        } catch (IOException e) {
+            log.debug("Writing message as it is, it cannot be encoded with {}: {}", codec.name(), e.getMessage());
+            return body;
+        }
+    }
+}
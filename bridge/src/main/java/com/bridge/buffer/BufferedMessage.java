@@ -0,0 +1,30 @@
+package com.bridge.buffer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Raw pub/sub message body in a buffer, with the {@link System#nanoTime()} it was received at,
+ * so the {@link com.bridge.batchemitter.BatchEmitter} can time how long it waited to be written.
+ * Spilled messages keep their receive time as {@link #ingressMillis()}, which survives a restart.
+ */
+public record BufferedMessage(byte[] body, long ingressNanos) {
+
+    public static BufferedMessage received(byte[] body) {
+        return new BufferedMessage(body, System.nanoTime());
+    }
+
+    /**
+     * @param ingressMillis the time the message was received at, in epoch milliseconds
+     */
+    public static BufferedMessage receivedAt(byte[] body, long ingressMillis) {
+        long age = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis() - ingressMillis);
+        return new BufferedMessage(body, System.nanoTime() - age);
+    }
+
+    /**
+     * @return the time the message was received at, in epoch milliseconds
+     */
+    public long ingressMillis() {
+        return System.currentTimeMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - ingressNanos);
+    }
+}
@@ -0,0 +1,204 @@
+package com.bridge.buffer;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded, pre-allocated, lock-free multi-producer/single-consumer ring buffer.
+ * Based on Dmitry Vyukov's bounded queue: every slot carries a sequence number,
+ * producers claim a slot with a single CAS on the tail and the consumer advances
+ * the head without any atomic read-modify-write.
+ * No node is allocated per element and offer/drainTo never take a lock.
+ * Only one thread may consume (poll, take, drainTo) at a time, any number of threads may produce.
+ * Blocking operations park the waiting side, the consumer is woken by the producers,
+ * a blocked producer re-checks for space with a short back-off.
+ * The capacity is rounded up to the next power of two.
+ *
+ * @param <E> the type of elements held in this buffer
+ */
+public class MpscRingBuffer<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+
+    private static final long MAX_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final AtomicReferenceArray<E> elements;
+
+    private final AtomicLong tail = new AtomicLong();
+    private final AtomicLong head = new AtomicLong();
+
+    private volatile Thread waitingConsumer;
+
+    public MpscRingBuffer(int requestedCapacity) {
+        if (requestedCapacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive, got " + requestedCapacity);
+        }
+        capacity = requestedCapacity == 1 ? 1 : Integer.highestOneBit(requestedCapacity - 1) << 1;
+        mask = capacity - 1;
+        sequences = new AtomicLongArray(capacity);
+        elements = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    @Override
+    public boolean offer(E e) {
+        Objects.requireNonNull(e);
+        long position = tail.get();
+        while (true) {
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    elements.lazySet(index, e);
+                    // Publishes the element to the consumer
+                    sequences.set(index, position + 1);
+                    Thread consumer = waitingConsumer;
+                    if (consumer != null) {
+                        LockSupport.unpark(consumer);
+                    }
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+    }
+
+    @Override
+    public E poll() {
+        long position = head.get();
+        int index = (int) position & mask;
+        if (sequences.get(index) != position + 1) {
+            return null;
+        }
+        E e = elements.get(index);
+        elements.lazySet(index, null);
+        // Hands the slot back to the producers one lap ahead
+        sequences.set(index, position + capacity);
+        head.lazySet(position + 1);
+        return e;
+    }
+
+    @Override
+    public E peek() {
+        long position = head.get();
+        int index = (int) position & mask;
+        return sequences.get(index) == position + 1 ? elements.get(index) : null;
+    }
+
+    @Override
+    public void put(E e) throws InterruptedException {
+        while (!offer(e)) {
+            backOff(MAX_PARK_NANOS);
+        }
+    }
+
+    @Override
+    public boolean offer(E e, long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (!offer(e)) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            backOff(Math.min(remaining, MAX_PARK_NANOS));
+        }
+        return true;
+    }
+
+    @Override
+    public E take() throws InterruptedException {
+        E e;
+        do {
+            e = poll(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } while (e == null);
+        return e;
+    }
+
+    @Override
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        E e = poll();
+        if (e != null) return e;
+
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        waitingConsumer = Thread.currentThread();
+        try {
+            while ((e = poll()) == null) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return null;
+                LockSupport.parkNanos(this, remaining);
+                if (Thread.interrupted()) throw new InterruptedException();
+            }
+            return e;
+        } finally {
+            waitingConsumer = null;
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c) {
+        return drainTo(c, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> c, int maxElements) {
+        Objects.requireNonNull(c);
+        if (c == this) throw new IllegalArgumentException();
+        int drained = 0;
+        E e;
+        while (drained < maxElements && (e = poll()) != null) {
+            c.add(e);
+            drained++;
+        }
+        return drained;
+    }
+
+    @Override
+    public int size() {
+        // Concurrent offers and polls make this an estimate, clamped to the valid range
+        long currentHead = head.get();
+        long currentTail = tail.get();
+        return (int) Math.max(0, Math.min(capacity, currentTail - currentHead));
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size();
+    }
+
+    /**
+     * Weakly consistent snapshot of the published elements, removal is not supported.
+     */
+    @Override
+    public Iterator<E> iterator() {
+        List<E> snapshot = new ArrayList<>();
+        long position = head.get();
+        long end = tail.get();
+        for (; position < end; position++) {
+            int index = (int) position & mask;
+            E e = elements.get(index);
+            if (sequences.get(index) != position + 1 || e == null) break;
+            snapshot.add(e);
+        }
+        return snapshot.stream().iterator();
+    }
+
+    private static void backOff(long nanos) throws InterruptedException {
+        LockSupport.parkNanos(nanos);
+        if (Thread.interrupted()) throw new InterruptedException();
+    }
+}
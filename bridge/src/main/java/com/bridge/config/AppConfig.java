@@ -1,6 +1,13 @@
 package com.bridge.config;
 
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.buffer.MpscRingBuffer;
+import com.common.retention.StreamRetentionService;
+import com.common.transport.MessageTransport;
+import com.common.transport.RedisTransport;
+import com.common.transport.StreamShards;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +16,7 @@ import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.RedisSystemException;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.stream.ReadOffset;
@@ -20,11 +28,13 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 
 import static com.bridge.config.Constants.BUFFER_CONTAINER_BEAN_NAME;
+import static com.bridge.config.Constants.BUFFER_TYPE_RING;
+import static com.bridge.config.Constants.EXECUTION_MODE_VIRTUAL;
 
 @Configuration
 @RequiredArgsConstructor
@@ -43,17 +53,38 @@ public class AppConfig {
     @Value("${redis.batch-buffer-size}")
     private int bufferSize;
 
+    @Value("${redis.batch-buffer-type}")
+    private String bufferType;
+
+    @Value("${redis.execution.mode}")
+    private String executionMode;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    @Value("${redis.stream.retention.max-len}")
+    private long retentionMaxLen;
+
+    @Value("${redis.stream.retention.max-age.ms}")
+    private long retentionMaxAgeMs;
+
+    @Value("${redis.stream.retention.trim-limit}")
+    private int retentionTrimLimit;
 
     /**
-     * Ensures the Redis stream and its consumer group exist.
+     * Ensures the Redis stream, or every shard of it, and its consumer group exist.
      * If the stream does not exist, it will be created with a dummy message.
      * If the consumer group already exists, it skips creation.
      */
     @PostConstruct
     public void ensureStreamAndGroup() {
+        StreamShards.keys(messageTopicName, streamShards).forEach(this::ensureStreamAndGroup);
+    }
+
+    private void ensureStreamAndGroup(String streamKey) {
         try {
-            redisTemplate.opsForStream().add(messageTopicName, Map.of("init", "true"));
-            redisTemplate.opsForStream().createGroup(messageTopicName, ReadOffset.from("0"), consumerGroupName);
+            redisTemplate.opsForStream().add(streamKey, Map.of("init", "true"));
+            redisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"), consumerGroupName);
         } catch (RedisSystemException e) {
             if (e.getCause().getMessage().contains("BUSYGROUP")) {
                 log.info("Consumer group exists.");
@@ -63,8 +94,22 @@ public class AppConfig {
         }
     }
 
+    /**
+     * Runs the pub/sub listeners.
+     * platform - fixed pool of twice the available processors
+     * virtual - a new virtual thread per task, needs Java 21 (mvn -Pjava21), refused at startup on an older runtime
+     */
     @Bean
-    ExecutorService executorService() {
+    Executor executorService() {
+        if (EXECUTION_MODE_VIRTUAL.equals(executionMode)) {
+            if (Runtime.version().feature() < 21) {
+                throw new IllegalStateException("redis.execution.mode=virtual needs a Java 21 runtime, running on Java "
+                        + Runtime.version() + ". Build with mvn -Pjava21 on a JDK 21 or set EXECUTION_MODE=platform");
+            }
+            var executor = new SimpleAsyncTaskExecutor("bridge-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
         var numberOfThreads = Runtime.getRuntime().availableProcessors() * 2;
         return Executors.newFixedThreadPool(numberOfThreads);
     }
@@ -77,19 +122,45 @@ public class AppConfig {
         return container;
     }
 
+    /**
+     * Pub/sub and stream operations of the listeners and the {@link com.bridge.batchemitter.BatchEmitter}.
+     */
+    @Bean
+    MessageTransport messageTransport() {
+        return new RedisTransport(redisTemplate, redisMessageListenerContainer());
+    }
+
     @Bean
     ChannelTopic messageTopic() {
         return new ChannelTopic(messageTopicName);
     }
 
+    /**
+     * Retention of the input stream the bridge writes to, every shard of it is trimmed on its own.
+     * With a single shard its cutoff is also used by the {@link com.bridge.batchemitter.ScriptedBatchAppender} to trim inline.
+     */
+    @Bean
+    StreamRetentionService streamRetentionService(MeterRegistry meterRegistry) {
+        return new StreamRetentionService(redisTemplate, StreamShards.keys(messageTopicName, streamShards),
+                retentionMaxLen, retentionMaxAgeMs, retentionTrimLimit, meterRegistry);
+    }
+
+    /**
+     * Creates a buffer between the pub/sub listeners and the {@link com.bridge.batchemitter.BatchEmitter}.
+     * ring - pre-allocated lock-free {@link MpscRingBuffer}, capacity rounded up to a power of two
+     * linked - {@link LinkedBlockingQueue}, allocates a node per message and locks on offer and drain
+     */
     @Bean
     @Scope(scopeName = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-    BlockingQueue<String> buffer() {
+    BlockingQueue<BufferedMessage> buffer() {
+        if (BUFFER_TYPE_RING.equals(bufferType)) {
+            return new MpscRingBuffer<>(bufferSize);
+        }
         return new LinkedBlockingQueue<>(bufferSize);
     }
 
     @Bean(BUFFER_CONTAINER_BEAN_NAME)
-    List<BlockingQueue<String>> bufferContainer() {
+    List<BlockingQueue<BufferedMessage>> bufferContainer() {
         return new ArrayList<>();
     }
 
@@ -2,8 +2,43 @@ package com.bridge.config;
 
 public interface Constants {
 
-    int BATCH_DRAIN_RATE_MS = 100;
+    // How long an idle flusher blocks on its buffer before re-checking for shutdown
+    int FLUSHER_IDLE_POLL_MS = 500;
+    // How long stop waits for the flushers to finish their batches before interrupting them
+    int FLUSHER_SHUTDOWN_TIMEOUT_MS = 5000;
+    // How long the spill replay waits while the buffers still hold a backlog
+    int SPILL_REPLAY_IDLE_MS = 50;
+    int SPILL_REPORT_RATE_MS = 10_000;
+    // Entries read per XREVRANGE while a new leader looks for messages the previous one wrote
+    int TAKEOVER_SCAN_PAGE_SIZE = 1000;
     int LOCK_TTL_MS = 15_000;
+    int DEDUP_GENERATIONS = 4;
+    int DEDUP_ROTATE_MS = LOCK_TTL_MS / (DEDUP_GENERATIONS - 1);
     String LISTENER_BEAN_NAME = "messageListener";
+    String SHARDED_LISTENER_BEAN_NAME = "shardedMessageListener";
     String BUFFER_CONTAINER_BEAN_NAME = "bufferContainer";
+
+    // Bridge modes, see redis.bridge.mode
+    String BRIDGE_MODE_REPLICATED = "replicated";
+    String BRIDGE_MODE_FAN_IN = "fan-in";
+
+    // Buffer types, see redis.batch-buffer-type
+    String BUFFER_TYPE_LINKED = "linked";
+    String BUFFER_TYPE_RING = "ring";
+
+    // Dedup stores, see redis.dedup.store
+    String DEDUP_STORE_GENERATIONAL = "generational";
+    String DEDUP_STORE_MAP = "map";
+
+    // Dedup modes, see redis.dedup.mode
+    String DEDUP_MODE_LOCAL = "local";
+    String DEDUP_MODE_DISTRIBUTED = "distributed";
+
+    // Emit modes, see redis.emit.mode
+    String EMIT_MODE_PIPELINE = "pipeline";
+    String EMIT_MODE_SCRIPT = "script";
+
+    // Execution modes, see redis.execution.mode
+    String EXECUTION_MODE_PLATFORM = "platform";
+    String EXECUTION_MODE_VIRTUAL = "virtual";
 }
@@ -0,0 +1,30 @@
+package com.bridge.dedup;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Time-windowed set of message IDs used to deduplicate messages.
+ * Implementations must be safe for concurrent use by the listener threads.
+ */
+public interface DedupStore {
+
+    /**
+     * Records the message ID if it was not seen within the dedup window.
+     * @param messageId the message ID, must not be {@literal null}
+     * @return true if the ID was not seen before and has been recorded
+     */
+    boolean tryAdd(String messageId);
+
+    /**
+     * Same as {@link #tryAdd(String)} for a UTF-8 encoded message ID held in a larger buffer.
+     */
+    default boolean tryAdd(byte[] source, int offset, int length) {
+        return tryAdd(new String(source, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Drops the IDs that fell out of the dedup window.
+     * @param now current time in milliseconds
+     */
+    void expire(long now);
+}
@@ -0,0 +1,247 @@
+package com.bridge.dedup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Compact dedup store that keeps message IDs as two primitive longs in open-addressed arrays.
+ * The window is split into time-bucketed generations: new IDs always go to the current generation
+ * and lookups check all of them. Expiry rotates the oldest generation out and reuses its arrays,
+ * so there is no per-entry scan and no per-entry allocation.
+ * With G generations, each spanning TTL / (G - 1), an ID is retained for at least the TTL.
+ * UUID message IDs are stored losslessly, any other ID is reduced to a 128 bit hash.
+ * The key space is split into stripes, each guarded by its own monitor.
+ */
+public class GenerationalDedupStore implements DedupStore {
+
+    private static final int STRIPE_BITS = 8;
+    private static final int MAX_LOAD_PERCENT = 50;
+
+    private final Stripe[] stripes;
+    private final long generationSpanMs;
+    private volatile long generationStart = System.currentTimeMillis();
+
+    public GenerationalDedupStore(long ttlMs, int generations, int initialCapacity) {
+        if (generations < 2) {
+            throw new IllegalArgumentException("At least 2 generations are required, got " + generations);
+        }
+        this.generationSpanMs = Math.max(1, ttlMs / (generations - 1));
+        int capacity = Integer.highestOneBit(Math.max(16, initialCapacity - 1) << 1);
+        this.stripes = new Stripe[1 << STRIPE_BITS];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Stripe(generations, capacity);
+        }
+    }
+
+    @Override
+    public boolean tryAdd(String messageId) {
+        byte[] bytes = messageId.getBytes(StandardCharsets.UTF_8);
+        return tryAdd(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public boolean tryAdd(byte[] source, int offset, int length) {
+        if (isUuid(source, offset, length)) {
+            return tryAdd(parseHex(source, offset, offset + 18), parseHex(source, offset + 19, offset + 36));
+        }
+        return tryAdd(fnv1a(source, offset, length), polynomial(source, offset, length));
+    }
+
+    /**
+     * Records a 128 bit message ID, e.g. the two halves of a UUID.
+     * @return true if the ID was not seen before and has been recorded
+     */
+    public boolean tryAdd(long msb, long lsb) {
+        long hash = mix(msb ^ Long.rotateLeft(lsb, 32));
+        Stripe stripe = stripes[(int) (hash >>> (64 - STRIPE_BITS))];
+        synchronized (stripe) {
+            return stripe.add(msb, lsb, hash);
+        }
+    }
+
+    /**
+     * Rotates the oldest generation out once the current one has been open for a full span.
+     */
+    @Override
+    public void expire(long now) {
+        if (now - generationStart < generationSpanMs) return;
+        generationStart = now;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.rotate();
+            }
+        }
+    }
+
+    public long size() {
+        long size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                for (Generation generation : stripe.generations) {
+                    size += generation.size;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static final class Stripe {
+
+        private final Generation[] generations;
+        private int current;
+
+        Stripe(int generations, int capacity) {
+            this.generations = new Generation[generations];
+            for (int i = 0; i < generations; i++) {
+                this.generations[i] = new Generation(capacity);
+            }
+        }
+
+        boolean add(long msb, long lsb, long hash) {
+            for (Generation generation : generations) {
+                if (generation.contains(msb, lsb, hash)) return false;
+            }
+            generations[current].insert(msb, lsb, hash);
+            return true;
+        }
+
+        void rotate() {
+            current = (current + 1) % generations.length;
+            generations[current].clear();
+        }
+    }
+
+    /**
+     * Linear-probing hash set of 128 bit keys, stored interleaved as [msb, lsb] pairs.
+     * The all-zero key marks an empty slot, so the zero ID itself is tracked by a flag.
+     */
+    private static final class Generation {
+
+        private long[] slots;
+        private int mask;
+        private int size;
+        private boolean hasZero;
+
+        Generation(int capacity) {
+            slots = new long[capacity * 2];
+            mask = capacity - 1;
+        }
+
+        boolean contains(long msb, long lsb, long hash) {
+            if ((msb | lsb) == 0) return hasZero;
+            if (size == 0) return false;
+            int index = (int) hash & mask;
+            while (true) {
+                long slotMsb = slots[index * 2];
+                long slotLsb = slots[index * 2 + 1];
+                if ((slotMsb | slotLsb) == 0) return false;
+                if (slotMsb == msb && slotLsb == lsb) return true;
+                index = (index + 1) & mask;
+            }
+        }
+
+        void insert(long msb, long lsb, long hash) {
+            if ((msb | lsb) == 0) {
+                hasZero = true;
+                return;
+            }
+            if ((size + 1) * 100L > (mask + 1) * (long) MAX_LOAD_PERCENT) {
+                grow();
+            }
+            put(slots, mask, msb, lsb, hash);
+            size++;
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(slots, 0L);
+            }
+            size = 0;
+            hasZero = false;
+        }
+
+        // Capacity is kept at the high-water mark, rotated generations reuse the grown arrays
+        private void grow() {
+            int newCapacity = (mask + 1) * 2;
+            long[] newSlots = new long[newCapacity * 2];
+            int newMask = newCapacity - 1;
+            for (int i = 0; i <= mask; i++) {
+                long msb = slots[i * 2];
+                long lsb = slots[i * 2 + 1];
+                if ((msb | lsb) != 0) {
+                    put(newSlots, newMask, msb, lsb, mix(msb ^ Long.rotateLeft(lsb, 32)));
+                }
+            }
+            slots = newSlots;
+            mask = newMask;
+        }
+
+        private static void put(long[] slots, int mask, long msb, long lsb, long hash) {
+            int index = (int) hash & mask;
+            while ((slots[index * 2] | slots[index * 2 + 1]) != 0) {
+                index = (index + 1) & mask;
+            }
+            slots[index * 2] = msb;
+            slots[index * 2 + 1] = lsb;
+        }
+    }
+
+    // Murmur3 64 bit finalizer
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static boolean isUuid(byte[] id, int offset, int length) {
+        if (length != 36
+                || id[offset + 8] != '-' || id[offset + 13] != '-'
+                || id[offset + 18] != '-' || id[offset + 23] != '-') {
+            return false;
+        }
+        for (int i = 0; i < 36; i++) {
+            if (i != 8 && i != 13 && i != 18 && i != 23 && hexValue(id[offset + i]) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseHex(byte[] id, int from, int to) {
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            int digit = hexValue(id[i]);
+            if (digit >= 0) {
+                value = (value << 4) | digit;
+            }
+        }
+        return value;
+    }
+
+    private static int hexValue(byte c) {
+        if (c >= '0' && c <= '9') return c - '0';
+        if (c >= 'a' && c <= 'f') return c - 'a' + 10;
+        if (c >= 'A' && c <= 'F') return c - 'A' + 10;
+        return -1;
+    }
+
+    private static long fnv1a(byte[] id, int offset, int length) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = offset; i < offset + length; i++) {
+            hash ^= id[i] & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static long polynomial(byte[] id, int offset, int length) {
+        long hash = length;
+        for (int i = offset; i < offset + length; i++) {
+            hash = hash * 0x9e3779b97f4a7c15L + (id[i] & 0xff);
+        }
+        return mix(hash);
+    }
+}
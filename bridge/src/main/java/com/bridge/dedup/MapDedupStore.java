@@ -0,0 +1,36 @@
+package com.bridge.dedup;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Dedup store backed by a {@link ConcurrentHashMap} of message ID to first-seen timestamp.
+ * Expired entries are removed by a full scan of the map once per TTL.
+ */
+public class MapDedupStore implements DedupStore {
+
+    private final ConcurrentMap<String, Long> seenMessages = new ConcurrentHashMap<>();
+    private final long ttlMs;
+    private long lastSweep = System.currentTimeMillis();
+
+    public MapDedupStore(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    public boolean tryAdd(String messageId) {
+        long now = System.currentTimeMillis();
+        return seenMessages.putIfAbsent(messageId, now) == null;
+    }
+
+    @Override
+    public void expire(long now) {
+        if (now - lastSweep < ttlMs) return;
+        lastSweep = now;
+        seenMessages.entrySet().removeIf(entry -> now - entry.getValue() > ttlMs);
+    }
+
+    public int size() {
+        return seenMessages.size();
+    }
+}
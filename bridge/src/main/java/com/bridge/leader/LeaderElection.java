@@ -0,0 +1,211 @@
+package com.bridge.leader;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.bridge.config.Constants.DEDUP_MODE_DISTRIBUTED;
+
+/**
+ * Lease-based leader election between bridge instances.
+ * The leader holds a Redis key with its instance ID and a TTL of {@link #leaseMs},
+ * renewing it every third of the lease. Standby instances try to acquire the key on the same schedule,
+ * so a crashed leader is replaced within roughly one lease period.
+ * A leader that cannot renew steps down before its lease can expire, and the emitters only write
+ * while {@link #holdsLease()}, which ends a renewal interval before the key can expire in Redis,
+ * so a leader whose renewals stall stops writing before a standby can take over.
+ * Every instance stays subscribed, only the leader emits - see {@link LeadershipAcquiredEvent}
+ * and {@link LeadershipRevokedEvent}.
+ * With redis.leader.enabled=false or redis.dedup.mode=distributed the instance is always the leader.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LeaderElection implements SmartLifecycle {
+
+    private static final RedisScript<Long> RENEW_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('pexpire', KEYS[1], ARGV[2]) else return 0 end", Long.class);
+
+    private static final RedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then "
+                    + "return redis.call('del', KEYS[1]) else return 0 end", Long.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Value("${redis.leader.enabled}")
+    private boolean enabled;
+
+    @Value("${redis.dedup.mode}")
+    private String dedupMode;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Value("${redis.leader.key}")
+    private String leaseKey;
+
+    @Setter(AccessLevel.PACKAGE)
+    @Value("${redis.leader.lease.ms}")
+    private long leaseMs;
+
+    @Getter
+    private final String instanceId = UUID.randomUUID().toString();
+
+    @Getter
+    @Setter(AccessLevel.PACKAGE)
+    private volatile boolean leader = false;
+
+    // Time in milliseconds of the last failover, -1 until this instance took over from another one
+    @Getter
+    private volatile long lastFailoverMs = -1;
+
+    private volatile boolean isRunning = false;
+    private ScheduledExecutorService scheduler;
+
+    // System.nanoTime() after which the lease can no longer be trusted without a renewal
+    @Setter(AccessLevel.PACKAGE)
+    private volatile long leaseValidUntil;
+
+    // Leader without a lease, with redis.leader.enabled=false or distributed dedup
+    private volatile boolean leaseless = false;
+
+    // Estimated wall clock time of the last renewal by the current leader, seen from a standby
+    private long leaderLastRenewedAt = -1;
+
+    @Override
+    public void start() {
+        isRunning = true;
+        // Distributed dedup lets every instance write its share, no single writer is needed
+        if (!enabled || DEDUP_MODE_DISTRIBUTED.equals(dedupMode)) {
+            leaseless = true;
+            becomeLeader(-1);
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "leader-election"));
+        scheduler.scheduleAtFixedRate(this::tick, 0, renewIntervalMs(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        isRunning = false;
+        if (scheduler == null) return;
+
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(renewIntervalMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Hand over right away instead of letting the standby wait for the lease to expire
+        if (leader) {
+            leader = false;
+            try {
+                redisTemplate.execute(RELEASE_SCRIPT, List.of(leaseKey), instanceId);
+            } catch (Exception e) {
+                log.warn("Failed to release leader lease", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return isRunning;
+    }
+
+    // Starts before and stops after the BatchEmitter, so the lease outlives the final flush
+    @Override
+    public int getPhase() {
+        return DEFAULT_PHASE - 2;
+    }
+
+    /**
+     * @return true while this instance is the leader and its lease is still valid, checked before every write
+     */
+    public boolean holdsLease() {
+        return leader && (leaseless || System.nanoTime() - leaseValidUntil < 0);
+    }
+
+    // Stops renewing without releasing the lease, as a crashed leader would
+    void halt() {
+        scheduler.shutdownNow();
+    }
+
+    void tick() {
+        try {
+            if (leader) {
+                renew();
+            } else {
+                tryAcquire();
+            }
+        } catch (Exception e) {
+            log.warn("Leader election round failed: {}", e.getMessage());
+            if (leader && System.nanoTime() - leaseValidUntil > 0) {
+                stepDown("lease could not be renewed in time");
+            }
+        }
+    }
+
+    private void tryAcquire() {
+        long attemptStart = System.nanoTime();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(leaseKey, instanceId, Duration.ofMillis(leaseMs));
+        if (Boolean.TRUE.equals(acquired)) {
+            leaseValidUntil = attemptStart + TimeUnit.MILLISECONDS.toNanos(leaseMs - renewIntervalMs());
+            long failoverMs = leaderLastRenewedAt < 0 ? -1 : System.currentTimeMillis() - leaderLastRenewedAt;
+            becomeLeader(failoverMs);
+            return;
+        }
+        Long ttl = redisTemplate.getExpire(leaseKey, TimeUnit.MILLISECONDS);
+        if (ttl != null && ttl > 0) {
+            leaderLastRenewedAt = System.currentTimeMillis() - (leaseMs - ttl);
+        }
+    }
+
+    private void renew() {
+        long attemptStart = System.nanoTime();
+        Long renewed = redisTemplate.execute(RENEW_SCRIPT, List.of(leaseKey), instanceId, String.valueOf(leaseMs));
+        if (renewed == null || renewed == 0) {
+            stepDown("lease is held by another instance");
+            return;
+        }
+        leaseValidUntil = attemptStart + TimeUnit.MILLISECONDS.toNanos(leaseMs - renewIntervalMs());
+    }
+
+    private void becomeLeader(long failoverMs) {
+        leader = true;
+        lastFailoverMs = failoverMs;
+        leaderLastRenewedAt = -1;
+        if (failoverMs >= 0) {
+            log.info("Instance {} took over as leader, failover took {} ms", instanceId, failoverMs);
+        } else {
+            log.info("Instance {} is the leader", instanceId);
+        }
+        eventPublisher.publishEvent(new LeadershipAcquiredEvent(failoverMs));
+    }
+
+    private void stepDown(String reason) {
+        leader = false;
+        log.warn("Instance {} stepped down as leader: {}", instanceId, reason);
+        eventPublisher.publishEvent(new LeadershipRevokedEvent());
+    }
+
+    private long renewIntervalMs() {
+        return Math.max(1, leaseMs / 3);
+    }
+}
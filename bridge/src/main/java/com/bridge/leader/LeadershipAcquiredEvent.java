@@ -0,0 +1,8 @@
+package com.bridge.leader;
+
+/**
+ * Published when this bridge instance becomes the leader and may emit to the stream.
+ * @param failoverMs time since the previous leader last renewed its lease, -1 if there was none
+ */
+public record LeadershipAcquiredEvent(long failoverMs) {
+}
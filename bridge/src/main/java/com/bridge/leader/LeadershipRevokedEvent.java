@@ -0,0 +1,7 @@
+package com.bridge.leader;
+
+/**
+ * Published when this bridge instance lost its lease and must stop emitting to the stream.
+ */
+public record LeadershipRevokedEvent() {
+}
@@ -0,0 +1,58 @@
+package com.bridge.leader;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Short window of the most recent messages seen by a standby bridge instance.
+ * On takeover the new leader emits the messages from this window that the previous leader
+ * did not write to the stream, so there is neither a gap nor a burst of duplicates.
+ * Bounded by age (shadow-window.ms) and by count (shadow-max-entries).
+ * The monitor of this object also guards the standby/leader switch in the BatchEmitter.
+ */
+@Component
+public class ShadowWindow {
+
+    private record Entry(long timestamp, byte[] body) {}
+
+    @Value("${redis.leader.shadow-window.ms}")
+    private long windowMs;
+
+    @Value("${redis.leader.shadow-max-entries}")
+    private int maxEntries;
+
+    private final Deque<Entry> entries = new ArrayDeque<>();
+
+    public synchronized void record(List<byte[]> batch) {
+        long now = System.currentTimeMillis();
+        for (byte[] body : batch) {
+            entries.addLast(new Entry(now, body));
+        }
+        while (!entries.isEmpty()
+                && (entries.size() > maxEntries || now - entries.peekFirst().timestamp() > windowMs)) {
+            entries.pollFirst();
+        }
+    }
+
+    /**
+     * @return time in milliseconds the oldest message was recorded at, or -1 if the window is empty
+     */
+    public synchronized long oldestTimestamp() {
+        return entries.isEmpty() ? -1 : entries.peekFirst().timestamp();
+    }
+
+    /**
+     * Removes and returns the shadowed messages in arrival order.
+     */
+    public synchronized List<byte[]> drain() {
+        List<byte[]> bodies = new ArrayList<>(entries.size());
+        entries.forEach(entry -> bodies.add(entry.body()));
+        entries.clear();
+        return bodies;
+    }
+}
@@ -0,0 +1,118 @@
+package com.bridge.leader;
+
+import com.bridge.listener.MessageIdScanner;
+import com.common.codec.Envelope;
+import com.common.codec.MessageCodec;
+import com.common.codec.MessageCodecs;
+import com.common.transport.StreamShards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import static com.bridge.config.Constants.TAKEOVER_SCAN_PAGE_SIZE;
+
+/**
+ * Finds the shadowed messages the previous leader did not get to write.
+ * Reads the tail of the stream, or of every shard of it, backwards, down to the time the oldest shadowed message was seen,
+ * and keeps only the shadowed messages whose message_id is not among the written ones.
+ * Entries written as an {@link Envelope} are unpacked to find the message_ids inside,
+ * payloads in another codec than JSON are decoded.
+ */
+@Component
+@RequiredArgsConstructor
+public class TakeoverReconciler {
+
+    private static final byte[] BODY_FIELD = "body".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final ChannelTopic topic;
+
+    // Allowance for clock skew between the bridge instances and Redis
+    @Value("${redis.leader.lease.ms}")
+    private long leaseMs;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    public List<byte[]> notYetWritten(List<byte[]> shadowed, long sinceMs) {
+        if (shadowed.isEmpty()) return shadowed;
+
+        Set<String> written = writtenIdsSince(sinceMs - leaseMs);
+        List<byte[]> missing = new ArrayList<>();
+        for (byte[] body : shadowed) {
+            long messageId = MessageIdScanner.scan(body);
+            if (messageId == MessageIdScanner.NOT_FOUND || !written.contains(MessageIdScanner.toString(body, messageId))) {
+                missing.add(body);
+            }
+        }
+        return missing;
+    }
+
+    private Set<String> writtenIdsSince(long sinceMs) {
+        Set<String> ids = new HashSet<>();
+        for (String shard : StreamShards.keys(topic.getTopic(), streamShards)) {
+            collectWrittenIds(shard.getBytes(StandardCharsets.UTF_8), sinceMs, ids);
+        }
+        return ids;
+    }
+
+    private void collectWrittenIds(byte[] streamKey, long sinceMs, Set<String> ids) {
+        redisTemplate.execute((RedisCallback<Set<String>>) connection -> {
+            Range<String> range = Range.unbounded();
+            while (true) {
+                List<ByteRecord> page = connection.streamCommands()
+                        .xRevRange(streamKey, range, Limit.limit().count(TAKEOVER_SCAN_PAGE_SIZE));
+                if (page == null || page.isEmpty()) return ids;
+
+                for (ByteRecord record : page) {
+                    if (record.getId().getTimestamp() < sinceMs) return ids;
+                    for (byte[] payload : bodiesOf(record.getValue())) {
+                        String messageId = messageIdOf(payload);
+                        if (messageId != null) {
+                            ids.add(messageId);
+                        }
+                    }
+                }
+                String oldestId = page.get(page.size() - 1).getId().getValue();
+                range = Range.leftUnbounded(Range.Bound.exclusive(oldestId));
+            }
+        });
+    }
+
+    private static String messageIdOf(byte[] payload) {
+        MessageCodec codec = MessageCodecs.detect(payload);
+        if (codec == MessageCodecs.JSON) {
+            long messageId = MessageIdScanner.scan(payload);
+            return messageId == MessageIdScanner.NOT_FOUND ? null : MessageIdScanner.toString(payload, messageId);
+        }
+        try {
+            return Objects.toString(codec.decode(payload).get(MessageCodec.MESSAGE_ID_FIELD), null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static List<byte[]> bodiesOf(Map<byte[], byte[]> fields) {
+        for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+            if (Arrays.equals(field.getKey(), BODY_FIELD)) return List.of(field.getValue());
+            if (Arrays.equals(field.getKey(), Envelope.FIELD)) return Envelope.unpack(field.getValue());
+        }
+        return List.of();
+    }
+}
@@ -1,17 +1,20 @@
 package com.bridge.listener;
 
+import com.common.transport.MessageTransport;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.data.redis.listener.ChannelTopic;
-import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static com.bridge.config.Constants.BRIDGE_MODE_FAN_IN;
 import static com.bridge.config.Constants.LISTENER_BEAN_NAME;
+import static com.bridge.config.Constants.SHARDED_LISTENER_BEAN_NAME;
 
 @Component
 @RequiredArgsConstructor
@@ -20,26 +23,36 @@ public class ListenerRegistration {
     @Value("${redis.bridge-group.size}")
     private int bridgeGroupSize;
 
+    @Value("${redis.bridge.mode}")
+    private String bridgeMode;
+
     private final ApplicationContext context;
-    private final RedisMessageListenerContainer messageListenerContainer;
+    private final MessageTransport transport;
     private final ChannelTopic topic;
 
-    List<MessageSubscriber> activeSubscriptions = new ArrayList<>();
+    List<MessageListener> activeSubscriptions = new ArrayList<>();
 
     /**
-     * Registers and starts multiple Redis message listeners.
-     * Each listener is a prototype-scoped bean.
-     * The number of listeners created is determined by {@link #bridgeGroupSize}.
+     * Subscribes the message listeners to the topic through the {@link MessageTransport}.
+     * In fan-in mode a single {@link ShardedMessageSubscriber} is registered,
+     * which routes every message to one of {@link #bridgeGroupSize} shard buffers.
+     * Otherwise multiple prototype-scoped listeners are registered on the same topic,
+     * the number of listeners created is determined by {@link #bridgeGroupSize}.
      */
     @PostConstruct
     public void registerListeners() {
 
+        if (BRIDGE_MODE_FAN_IN.equals(bridgeMode)) {
+            var listener = context.getBean(SHARDED_LISTENER_BEAN_NAME, ShardedMessageSubscriber.class);
+            activeSubscriptions.add(listener);
+            transport.subscribe(topic.getTopic(), listener::onMessage);
+            return;
+        }
+
         for (int i = 0; i < bridgeGroupSize; i++) {
             var listener = context.getBean(LISTENER_BEAN_NAME, MessageSubscriber.class);
             activeSubscriptions.add(listener);
-            messageListenerContainer.addMessageListener(listener, topic);
+            transport.subscribe(topic.getTopic(), listener::onMessage);
         }
-
-        messageListenerContainer.start();
     }
 }
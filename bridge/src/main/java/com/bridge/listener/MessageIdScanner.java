@@ -0,0 +1,82 @@
+package com.bridge.listener;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Locates the message_id value in a raw JSON message body without decoding or parsing it.
+ * The scan looks for the quoted field name followed by a colon and a string value,
+ * so the ID can be used straight from the pub/sub bytes.
+ * Escape sequences inside the value are kept as-is, the raw bytes are the identity of the message.
+ */
+public final class MessageIdScanner {
+
+    private static final byte[] MESSAGE_ID_FIELD = "\"message_id\"".getBytes(StandardCharsets.UTF_8);
+    public static final long NOT_FOUND = -1;
+
+    private MessageIdScanner() {
+    }
+
+    /**
+     * @param body raw JSON message body
+     * @return the value range packed as (from << 32 | to), to is exclusive, or {@link #NOT_FOUND}
+     */
+    public static long scan(byte[] body) {
+        int from = 0;
+        while ((from = indexOf(body, MESSAGE_ID_FIELD, from)) >= 0) {
+            int i = skipWhitespace(body, from + MESSAGE_ID_FIELD.length);
+            from += MESSAGE_ID_FIELD.length;
+            if (i >= body.length || body[i] != ':') continue;
+
+            i = skipWhitespace(body, i + 1);
+            if (i >= body.length || body[i] != '"') return NOT_FOUND;
+
+            int start = ++i;
+            while (i < body.length && body[i] != '"') {
+                i += body[i] == '\\' ? 2 : 1;
+            }
+            return i < body.length ? ((long) start << 32) | i : NOT_FOUND;
+        }
+        return NOT_FOUND;
+    }
+
+    public static int from(long range) {
+        return (int) (range >>> 32);
+    }
+
+    public static int to(long range) {
+        return (int) range;
+    }
+
+    /**
+     * Hash of the value bytes, stable for the same ID regardless of where it sits in the body.
+     */
+    public static int hash(byte[] body, long range) {
+        int hash = 1;
+        for (int i = from(range); i < to(range); i++) {
+            hash = 31 * hash + body[i];
+        }
+        return hash;
+    }
+
+    public static String toString(byte[] body, long range) {
+        return new String(body, from(range), to(range) - from(range), StandardCharsets.UTF_8);
+    }
+
+    private static int indexOf(byte[] source, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) continue outer;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int skipWhitespace(byte[] body, int i) {
+        while (i < body.length && (body[i] == ' ' || body[i] == '\t' || body[i] == '\n' || body[i] == '\r')) {
+            i++;
+        }
+        return i;
+    }
+}
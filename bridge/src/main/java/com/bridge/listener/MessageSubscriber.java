@@ -1,8 +1,8 @@
 package com.bridge.listener;
 
+import com.bridge.buffer.BufferedMessage;
 import com.bridge.service.LockService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.bridge.spill.SpillLog;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,7 +13,6 @@ import org.springframework.data.redis.connection.Message;
 import org.springframework.data.redis.connection.MessageListener;
 import org.springframework.stereotype.Service;
 
-import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 
@@ -27,39 +26,47 @@ import static com.bridge.config.Constants.LISTENER_BEAN_NAME;
 public class MessageSubscriber implements MessageListener {
 
     @Qualifier(BUFFER_CONTAINER_BEAN_NAME)
-    private final List<BlockingQueue<String>> bufferContainer;
-    private final BlockingQueue<String> buffer;
-    private final ObjectMapper objectMapper;
+    private final List<BlockingQueue<BufferedMessage>> bufferContainer;
+    private final BlockingQueue<BufferedMessage> buffer;
     private final LockService lockService;
+    private final SpillLog spillLog;
 
     @PostConstruct
     public void init() {
         bufferContainer.add(buffer);
     }
 
-    /**
-     * Handles incoming messages from Redis Pub/Sub channel.
-     * @param message message must not be {@literal null}.
-     * @param pattern pattern matching the channel (if specified) - can be {@literal null}.
-     */
     @Override
     public void onMessage(Message message, byte[] pattern) {
+        onMessage(message.getBody());
+    }
+
+    /**
+     * Handles incoming messages from the pub/sub channel.
+     * The raw body bytes are buffered as they are, the message_id is located with a byte scan.
+     * If the buffer is full the message goes to the {@link SpillLog}.
+     * @param body raw message body as published
+     */
+    public void onMessage(byte[] body) {
         try {
-            String body = new String(message.getBody(), StandardCharsets.UTF_8);
-            JsonNode node = objectMapper.readTree(body);
-            String messageId = node.get("message_id").asText();
+            long messageId = MessageIdScanner.scan(body);
+            if (messageId == MessageIdScanner.NOT_FOUND) {
+                log.warn("Skipping message without message_id");
+                return;
+            }
 
             // Acquires lock for this message ID
             // This way multiple subscribers can work together
             // Important: the order of messages is not guaranteed
             // Important: the lock is implemented in-memory
-            if (lockService.tryLock(messageId)) {
-                boolean offered = buffer.offer(body);
+            int from = MessageIdScanner.from(messageId);
+            if (lockService.tryLock(body, from, MessageIdScanner.to(messageId) - from)) {
+                boolean offered = spillLog.offer(buffer, BufferedMessage.received(body));
                 if (!offered) {
-                    log.warn("Buffer full! Dropping message with ID: {}", messageId);
+                    log.warn("Buffer and spill log full! Dropping message with ID: {}", MessageIdScanner.toString(body, messageId));
                 }
-            } else {
-                log.debug("Lock exists for message_id {}, skipping", messageId);
+            } else if (log.isDebugEnabled()) {
+                log.debug("Lock exists for message_id {}, skipping", MessageIdScanner.toString(body, messageId));
             }
         } catch (Exception e) {
             log.warn("Failed to process incoming message", e);
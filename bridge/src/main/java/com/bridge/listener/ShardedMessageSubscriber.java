@@ -0,0 +1,94 @@
+package com.bridge.listener;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.service.LockService;
+import com.bridge.spill.SpillLog;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+
+import static com.bridge.config.Constants.BUFFER_CONTAINER_BEAN_NAME;
+import static com.bridge.config.Constants.SHARDED_LISTENER_BEAN_NAME;
+
+/**
+ * Single pub/sub subscriber used in fan-in mode.
+ * Every message is delivered and scanned for its message_id exactly once and then routed
+ * to one of the shard buffers by the hash of its message_id.
+ * The number of shards is determined by {@link #bridgeGroupSize}.
+ * Each delivery reaches exactly one buffer, so there are no copies made by the bridge itself to filter.
+ * The {@link LockService} still filters message IDs published more than once, as in replicated mode.
+ */
+@Service(SHARDED_LISTENER_BEAN_NAME)
+@Scope(scopeName = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
+@RequiredArgsConstructor
+@Slf4j
+public class ShardedMessageSubscriber implements MessageListener {
+
+    @Qualifier(BUFFER_CONTAINER_BEAN_NAME)
+    private final List<BlockingQueue<BufferedMessage>> bufferContainer;
+    private final ObjectProvider<BlockingQueue<BufferedMessage>> bufferProvider;
+    private final LockService lockService;
+    private final SpillLog spillLog;
+
+    @Value("${redis.bridge-group.size}")
+    private int bridgeGroupSize;
+
+    private final List<BlockingQueue<BufferedMessage>> shards = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < bridgeGroupSize; i++) {
+            var shard = bufferProvider.getObject();
+            shards.add(shard);
+            bufferContainer.add(shard);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        onMessage(message.getBody());
+    }
+
+    /**
+     * Handles incoming messages from the pub/sub channel and routes them to a shard buffer.
+     * If the shard buffer is full the message goes to the {@link SpillLog}.
+     * @param body raw message body as published
+     */
+    public void onMessage(byte[] body) {
+        try {
+            long messageId = MessageIdScanner.scan(body);
+            if (messageId == MessageIdScanner.NOT_FOUND) {
+                log.warn("Skipping message without message_id");
+                return;
+            }
+
+            int from = MessageIdScanner.from(messageId);
+            if (!lockService.tryLock(body, from, MessageIdScanner.to(messageId) - from)) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Message_id {} was seen before, skipping", MessageIdScanner.toString(body, messageId));
+                }
+                return;
+            }
+
+            // Same message_id always lands in the same shard
+            int shardIndex = Math.floorMod(MessageIdScanner.hash(body, messageId), shards.size());
+            if (!spillLog.offer(shards.get(shardIndex), BufferedMessage.received(body))) {
+                log.warn("Buffer and spill log full! Dropping message with ID: {}", MessageIdScanner.toString(body, messageId));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to process incoming message", e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.bridge.service;
+
+import com.bridge.leader.LeaderElection;
+import com.bridge.listener.MessageIdScanner;
+import com.common.transport.StreamShards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.bridge.config.Constants.DEDUP_MODE_DISTRIBUTED;
+import static com.bridge.config.Constants.LOCK_TTL_MS;
+
+/**
+ * Distributed deduplication, amortized per batch.
+ * Before a batch is written, all its message IDs are claimed in one script call
+ * and only the messages this instance won are written to the stream.
+ * This lets several bridge instances receive the same pub/sub messages and share the writes
+ * with one extra round trip per batch instead of one per message.
+ * Claimed IDs live in Redis hashes bucketed by {@link com.bridge.config.Constants#LOCK_TTL_MS},
+ * the neighbouring buckets are checked too, so clock skew between instances is tolerated.
+ * Every stream shard has its own hashes, hash-tagged like the shard, so the script only touches keys in the slot of that shard.
+ * Messages without a message_id cannot be deduplicated and are never claimed, every instance writes them.
+ * Active with redis.dedup.mode=distributed.
+ */
+@Component
+@RequiredArgsConstructor
+public class BatchClaimService {
+
+    private static final RedisScript<List> CLAIM_SCRIPT =
+            RedisScript.of(new ClassPathResource("scripts/claim-message-ids.lua"), List.class);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final LeaderElection leaderElection;
+
+    @Value("${redis.dedup.mode}")
+    private String dedupMode;
+
+    @Value("${redis.dedup.key-prefix}")
+    private String keyPrefix;
+
+    public boolean isEnabled() {
+        return DEDUP_MODE_DISTRIBUTED.equals(dedupMode);
+    }
+
+    /**
+     * Claims the message IDs of the batch in the claim hashes of the stream shard it is written to.
+     * IDs this instance claimed before stay its own, so a batch that failed to write can be claimed again.
+     * @return the messages owned by this instance and the messages without a message_id, in batch order
+     */
+    public List<byte[]> claim(String streamKey, List<byte[]> batch) {
+        if (batch.isEmpty()) return batch;
+
+        List<String> args = new ArrayList<>(batch.size() + 2);
+        args.add(String.valueOf(LOCK_TTL_MS));
+        args.add(leaderElection.getInstanceId());
+        // Batch position of every claimed ID, messages without one are owned without asking
+        int[] positions = new int[batch.size()];
+        boolean[] owned = new boolean[batch.size()];
+        int claimed = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            byte[] body = batch.get(i);
+            long messageId = MessageIdScanner.scan(body);
+            if (messageId == MessageIdScanner.NOT_FOUND) {
+                owned[i] = true;
+            } else {
+                args.add(MessageIdScanner.toString(body, messageId));
+                positions[claimed++] = i;
+            }
+        }
+
+        if (claimed > 0) {
+            List<?> won = redisTemplate.execute(CLAIM_SCRIPT, bucketKeys(streamKey), args.toArray());
+            if (won != null) {
+                for (Object position : won) {
+                    owned[positions[((Number) position).intValue() - 1]] = true;
+                }
+            }
+        }
+        List<byte[]> winners = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (owned[i]) winners.add(batch.get(i));
+        }
+        return winners;
+    }
+
+    /**
+     * @return the claim hashes of the previous, current and next time bucket of the stream shard
+     */
+    public List<String> bucketKeys(String streamKey) {
+        String hashTag = StreamShards.hashTag(streamKey);
+        long bucket = System.currentTimeMillis() / LOCK_TTL_MS;
+        return List.of(bucketKey(hashTag, bucket - 1), bucketKey(hashTag, bucket), bucketKey(hashTag, bucket + 1));
+    }
+
+    // Tagged like the shard, so the buckets and the shard live in one cluster slot
+    private String bucketKey(String hashTag, long bucket) {
+        return keyPrefix + ":" + bucket + ":{" + hashTag + "}";
+    }
+}
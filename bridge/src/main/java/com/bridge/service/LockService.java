@@ -1,37 +1,62 @@
 package com.bridge.service;
 
+import com.bridge.dedup.DedupStore;
+import com.bridge.dedup.GenerationalDedupStore;
+import com.bridge.dedup.MapDedupStore;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
-
+import static com.bridge.config.Constants.DEDUP_GENERATIONS;
+import static com.bridge.config.Constants.DEDUP_ROTATE_MS;
+import static com.bridge.config.Constants.DEDUP_STORE_MAP;
 import static com.bridge.config.Constants.LOCK_TTL_MS;
 
 
 /**
  * A simple in-memory lock mechanism to deduplicate messages using their message ID.
- * Each message ID is stored with a timestamp to track when it was first seen.
- * Old entries are periodically cleaned up to prevent memory leaks.
- * If we want to make the application scale horizontally
- * the only thing we need to do is implement a distributed lock here
- * But beware - the efficiency drops with redis distributed synchronisation
+ * Each message ID is remembered for at least {@link com.bridge.config.Constants#LOCK_TTL_MS}.
+ * The backing {@link DedupStore} is selected with redis.dedup.store:
+ * - generational - compact primitive arrays, expired by rotating whole generations
+ * - map - a ConcurrentHashMap, expired by scanning all entries
+ * This lock only filters the copies made inside one instance.
+ * To scale horizontally use redis.dedup.mode=distributed, which claims the message IDs
+ * across instances once per batch - see {@link BatchClaimService}
  */
 @Component
 @RequiredArgsConstructor
 public class LockService {
 
-    private final ConcurrentMap<String, Long> seenMessages = new ConcurrentHashMap<>();
+    @Value("${redis.dedup.store}")
+    private String dedupStoreType;
+
+    @Value("${redis.dedup.initial-capacity}")
+    private int initialCapacity;
+
+    private DedupStore seenMessages;
+
+    @PostConstruct
+    public void init() {
+        seenMessages = DEDUP_STORE_MAP.equals(dedupStoreType)
+                ? new MapDedupStore(LOCK_TTL_MS)
+                : new GenerationalDedupStore(LOCK_TTL_MS, DEDUP_GENERATIONS, initialCapacity);
+    }
 
     public boolean tryLock(String messageId) {
-        long now = System.currentTimeMillis();
-        return seenMessages.putIfAbsent(messageId, now) == null;
+        return seenMessages.tryAdd(messageId);
+    }
+
+    /**
+     * Same as {@link #tryLock(String)} for a message ID that is a range of a raw message body.
+     */
+    public boolean tryLock(byte[] source, int offset, int length) {
+        return seenMessages.tryAdd(source, offset, length);
     }
 
-    @Scheduled(fixedDelay = LOCK_TTL_MS)
+    @Scheduled(fixedDelay = DEDUP_ROTATE_MS)
     public void cleanup() {
-        long now = System.currentTimeMillis();
-        seenMessages.entrySet().removeIf(entry -> now - entry.getValue() > LOCK_TTL_MS);
+        seenMessages.expire(System.currentTimeMillis());
     }
 }
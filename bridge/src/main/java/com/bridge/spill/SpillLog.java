@@ -0,0 +1,251 @@
+package com.bridge.spill;
+
+import com.bridge.buffer.BufferedMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static com.bridge.config.Constants.SPILL_REPORT_RATE_MS;
+
+/**
+ * Overflow tier for the bridge buffers.
+ * Messages that don't fit in a buffer are appended to memory-mapped segment files on local disk
+ * and replayed into the stream in order by the {@link com.bridge.batchemitter.BatchEmitter}.
+ * While the log holds messages, new messages are spilled as well, so they don't overtake the spilled ones.
+ * Once a buffer is full or the log holds messages, that decision is taken under the lock of the log,
+ * the same lock the replay reads and acknowledges under, so it never rests on a pending count that is changing.
+ * Spilled messages are replayed by a single thread, one batch at a time, so while anything is spilled that thread
+ * limits the throughput of the bridge, until the log has drained.
+ * Disk usage is bounded by segment-size-bytes * max-segments, beyond that messages are dropped.
+ * Pending segments survive a restart and are replayed after it.
+ * Publishes the pending, spilled, replayed and dropped counts to the {@link MeterRegistry}.
+ */
+@Component
+@Slf4j
+public class SpillLog {
+
+    // Messages in the log, waiting to be replayed
+    public static final String PENDING_METRIC = "bridge.spill.pending";
+    public static final String SPILLED_METRIC = "bridge.spill.spilled";
+    public static final String REPLAYED_METRIC = "bridge.spill.replayed";
+    public static final String DROPPED_METRIC = "bridge.spill.dropped";
+
+    private static final String SEGMENT_PREFIX = "spill-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Value("${redis.spill.enabled}")
+    private boolean enabled;
+
+    @Value("${redis.spill.dir}")
+    private Path directory;
+
+    @Value("${redis.spill.segment-size-bytes}")
+    private int segmentSize;
+
+    @Value("${redis.spill.max-segments}")
+    private int maxSegments;
+
+    // Oldest first, the last segment takes the appends
+    private final Deque<SpillSegment> segments = new ArrayDeque<>();
+    private long nextSegmentId;
+
+    // Read position reached by the last readBatch, committed by acknowledge
+    private int batchEndPosition;
+    private int batchRecords;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong spilled = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private long lastReported;
+
+    public SpillLog(MeterRegistry meterRegistry) {
+        meterRegistry.gauge(PENDING_METRIC, pending);
+        meterRegistry.more().counter(SPILLED_METRIC, Tags.empty(), spilled);
+        meterRegistry.more().counter(REPLAYED_METRIC, Tags.empty(), replayed);
+        meterRegistry.more().counter(DROPPED_METRIC, Tags.empty(), dropped);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) return;
+
+        Files.createDirectories(directory);
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(SpillLog::isSegment).sorted().toList()) {
+                var segment = SpillSegment.open(file, segmentId(file));
+                nextSegmentId = segment.id + 1;
+                if (segment.isFullyRead()) {
+                    segment.delete();
+                    continue;
+                }
+                segments.add(segment);
+                pending.addAndGet(segment.pendingRecords());
+            }
+        }
+        if (pending.get() > 0) {
+            log.info("Recovered {} spilled messages from {}", pending.get(), directory);
+        }
+    }
+
+    /**
+     * Offers the message to the buffer, or appends it to the log if the buffer is full
+     * or older messages are still waiting in the log.
+     * The body is spilled with the time it was received, so replayed messages are timed from their receipt.
+     * @return false if the message was dropped
+     */
+    public boolean offer(BlockingQueue<BufferedMessage> buffer, BufferedMessage message) {
+        // Nothing spilled and room in the buffer, the common case takes no lock
+        if (pending.get() == 0 && buffer.offer(message)) {
+            return true;
+        }
+        synchronized (this) {
+            if (pending.get() == 0 && buffer.offer(message)) {
+                return true;
+            }
+            return append(message);
+        }
+    }
+
+    public synchronized boolean append(BufferedMessage message) {
+        byte[] body = message.body();
+        if (!enabled || body.length == 0
+                || body.length + SpillSegment.RECORD_OVERHEAD_BYTES + SpillSegment.HEADER_BYTES > segmentSize) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        try {
+            SpillSegment segment = segments.peekLast();
+            if (segment == null || !segment.hasRoomFor(body.length)) {
+                if (segments.size() >= maxSegments) {
+                    dropped.incrementAndGet();
+                    return false;
+                }
+                segment = SpillSegment.create(segmentPath(nextSegmentId), nextSegmentId++, segmentSize);
+                segments.add(segment);
+            }
+            segment.append(body, message.ingressMillis());
+            pending.incrementAndGet();
+            spilled.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            log.error("Failed to spill message", e);
+            dropped.incrementAndGet();
+            return false;
+        }
+    }
+
+    public boolean isEmpty() {
+        return pending.get() == 0;
+    }
+
+    /**
+     * Reads up to maxRecords of the oldest spilled messages without removing them.
+     * Only one thread may replay, the batch is removed by {@link #acknowledge()}.
+     */
+    public synchronized List<BufferedMessage> readBatch(int maxRecords) {
+        List<BufferedMessage> batch = new ArrayList<>();
+        SpillSegment segment = segments.peekFirst();
+        if (segment == null) return batch;
+
+        int position = segment.readPosition();
+        while (batch.size() < maxRecords && position < segment.writePosition()) {
+            BufferedMessage message = segment.read(position);
+            batch.add(message);
+            position += SpillSegment.RECORD_OVERHEAD_BYTES + message.body().length;
+        }
+        batchEndPosition = position;
+        batchRecords = batch.size();
+        return batch;
+    }
+
+    /**
+     * Removes the batch returned by the last {@link #readBatch(int)} once it was written to the stream.
+     * Fully replayed segments are deleted.
+     */
+    public synchronized void acknowledge() {
+        SpillSegment segment = segments.peekFirst();
+        if (segment == null || batchRecords == 0) return;
+
+        segment.advanceReadPosition(batchEndPosition);
+        pending.addAndGet(-batchRecords);
+        replayed.addAndGet(batchRecords);
+        batchRecords = 0;
+
+        if (segment.isFullyRead()) {
+            segments.pollFirst();
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    public long getSpilledCount() {
+        return spilled.get();
+    }
+
+    public long getReplayedCount() {
+        return replayed.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * Logs the spill counters whenever something was spilled since the last report.
+     */
+    @Scheduled(fixedRate = SPILL_REPORT_RATE_MS)
+    public void reportMetrics() {
+        long total = spilled.get() + dropped.get();
+        if (total == lastReported && pending.get() == 0) return;
+        lastReported = total;
+        log.info("Spill log - pending: {}, spilled: {}, replayed: {}, dropped: {}",
+                pending.get(), spilled.get(), replayed.get(), dropped.get());
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        for (SpillSegment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%019d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private static boolean isSegment(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static long segmentId(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
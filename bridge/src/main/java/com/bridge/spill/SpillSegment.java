@@ -0,0 +1,122 @@
+package com.bridge.spill;
+
+import com.bridge.buffer.BufferedMessage;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A fixed-size, memory-mapped, append-only file of length-prefixed records.
+ * Layout: [8 byte read position][int length][long ingress millis][body]...[int length][long ingress millis][body][zeros]
+ * The length counts the body only. It is written after the rest of the record, so a torn append reads as the end of the segment.
+ * The read position is persisted in the header, so a restart resumes where the replay stopped.
+ * Not thread-safe, guarded by {@link SpillLog}.
+ */
+class SpillSegment {
+
+    static final int HEADER_BYTES = Long.BYTES;
+    // Length prefix and ingress time of a record
+    static final int RECORD_OVERHEAD_BYTES = Integer.BYTES + Long.BYTES;
+
+    final long id;
+    private final Path path;
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private int readPosition;
+    private int writePosition;
+
+    private SpillSegment(long id, Path path, FileChannel channel, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.buffer = buffer;
+    }
+
+    static SpillSegment create(Path path, long id, int size) throws IOException {
+        var channel = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var segment = new SpillSegment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        segment.readPosition = HEADER_BYTES;
+        segment.writePosition = HEADER_BYTES;
+        segment.buffer.putLong(0, HEADER_BYTES);
+        return segment;
+    }
+
+    /**
+     * Maps an existing segment and finds its end by walking the length prefixes.
+     */
+    static SpillSegment open(Path path, long id) throws IOException {
+        var channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        var segment = new SpillSegment(id, path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        int capacity = segment.buffer.capacity();
+        int position = HEADER_BYTES;
+        while (position + Integer.BYTES <= capacity) {
+            int length = segment.buffer.getInt(position);
+            if (length <= 0 || position + RECORD_OVERHEAD_BYTES + length > capacity) break;
+            position += RECORD_OVERHEAD_BYTES + length;
+        }
+        segment.writePosition = position;
+        segment.readPosition = (int) Math.min(Math.max(segment.buffer.getLong(0), HEADER_BYTES), position);
+        return segment;
+    }
+
+    boolean hasRoomFor(int length) {
+        return writePosition + RECORD_OVERHEAD_BYTES + length <= buffer.capacity();
+    }
+
+    void append(byte[] body, long ingressMillis) {
+        buffer.putLong(writePosition + Integer.BYTES, ingressMillis);
+        buffer.put(writePosition + RECORD_OVERHEAD_BYTES, body);
+        buffer.putInt(writePosition, body.length);
+        writePosition += RECORD_OVERHEAD_BYTES + body.length;
+    }
+
+    /**
+     * Reads the record at the given position.
+     * @return the message, the next position is position + {@link #RECORD_OVERHEAD_BYTES} + body length
+     */
+    BufferedMessage read(int position) {
+        byte[] body = new byte[buffer.getInt(position)];
+        buffer.get(position + RECORD_OVERHEAD_BYTES, body);
+        return BufferedMessage.receivedAt(body, buffer.getLong(position + Integer.BYTES));
+    }
+
+    int readPosition() {
+        return readPosition;
+    }
+
+    int writePosition() {
+        return writePosition;
+    }
+
+    void advanceReadPosition(int position) {
+        readPosition = position;
+        buffer.putLong(0, position);
+    }
+
+    boolean isFullyRead() {
+        return readPosition >= writePosition;
+    }
+
+    long pendingRecords() {
+        long records = 0;
+        for (int position = readPosition; position < writePosition; position += RECORD_OVERHEAD_BYTES + buffer.getInt(position)) {
+            records++;
+        }
+        return records;
+    }
+
+    void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    void delete() throws IOException {
+        channel.close();
+        Files.deleteIfExists(path);
+    }
+}
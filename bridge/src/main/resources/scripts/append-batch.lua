@@ -0,0 +1,58 @@
+-- Appends a batch of messages to the stream, skipping IDs that were appended before, then trims the stream.
+-- Runs atomically, so a batch retried after a lost reply is skipped instead of written twice.
+-- KEYS[1]    - stream
+-- KEYS[2..4] - claim hashes of the previous, current and next time bucket
+-- ARGV[1]    - bucket TTL in milliseconds
+-- ARGV[2]    - instance ID of the caller
+-- ARGV[3]    - trim strategy, MINID or MAXLEN, empty to skip trimming
+-- ARGV[4]    - trim threshold
+-- ARGV[5]    - body field name
+-- ARGV[6]    - envelope size, messages packed into one entry when above 1
+-- ARGV[7]    - envelope field name
+-- ARGV[8]    - ingress field name
+-- ARGV[9]    - ingress time added to every entry, empty to leave it out
+-- ARGV[10..n] - message ID and body pairs, an empty ID is appended without dedup
+-- Returns the number of appended messages.
+local owner_id = ARGV[2]
+local envelope_size = tonumber(ARGV[6])
+local appended = {}
+for i = 10, #ARGV, 2 do
+    local id = ARGV[i]
+    if id == ''
+            or (redis.call('HEXISTS', KEYS[2], id) == 0
+            and redis.call('HEXISTS', KEYS[4], id) == 0
+            and redis.call('HSETNX', KEYS[3], id, owner_id) == 1) then
+        appended[#appended + 1] = ARGV[i + 1]
+    end
+end
+redis.call('PEXPIRE', KEYS[3], tonumber(ARGV[1]) * 3)
+
+local function xadd(field, value)
+    if ARGV[9] ~= '' then
+        redis.call('XADD', KEYS[1], '*', field, value, ARGV[8], ARGV[9])
+    else
+        redis.call('XADD', KEYS[1], '*', field, value)
+    end
+end
+
+if envelope_size > 1 then
+    -- Same layout as com.common.codec.Envelope: [int count]([int length][body])*, big-endian
+    for from = 1, #appended, envelope_size do
+        local to = math.min(from + envelope_size - 1, #appended)
+        local parts = { struct.pack('>i4', to - from + 1) }
+        for i = from, to do
+            parts[#parts + 1] = struct.pack('>i4', #appended[i])
+            parts[#parts + 1] = appended[i]
+        end
+        xadd(ARGV[7], table.concat(parts))
+    end
+else
+    for i = 1, #appended do
+        xadd(ARGV[5], appended[i])
+    end
+end
+
+if ARGV[3] ~= '' then
+    redis.call('XTRIM', KEYS[1], ARGV[3], '~', ARGV[4])
+end
+return #appended
@@ -0,0 +1,25 @@
+-- Claims a batch of message IDs for the calling bridge instance.
+-- KEYS[1..3] - claim hashes of the previous, current and next time bucket
+-- ARGV[1]    - bucket TTL in milliseconds
+-- ARGV[2]    - instance ID of the caller
+-- ARGV[3..n] - message IDs
+-- Returns the 1-based positions of the IDs owned by the caller.
+-- IDs the caller claimed before are returned again, so a failed batch can be retried.
+local owner_id = ARGV[2]
+local won = {}
+for i = 3, #ARGV do
+    local id = ARGV[i]
+    local owner = redis.call('HGET', KEYS[1], id) or redis.call('HGET', KEYS[3], id)
+    if not owner then
+        if redis.call('HSETNX', KEYS[2], id, owner_id) == 1 then
+            owner = owner_id
+        else
+            owner = redis.call('HGET', KEYS[2], id)
+        end
+    end
+    if owner == owner_id then
+        won[#won + 1] = i - 2
+    end
+end
+redis.call('PEXPIRE', KEYS[2], tonumber(ARGV[1]) * 3)
+return won
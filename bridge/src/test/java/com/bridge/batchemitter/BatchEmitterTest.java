@@ -0,0 +1,119 @@
+package com.bridge.batchemitter;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.leader.LeaderElections;
+import com.bridge.leader.ShadowWindow;
+import com.bridge.service.BatchClaimService;
+import com.bridge.spill.SpillLog;
+import com.common.transport.InMemoryTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class BatchEmitterTest {
+
+    private static final String STREAM = "messages:published";
+    private static final String GROUP = "group";
+    private static final byte[] BODY_FIELD = "body".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testBatchThatFailsToWriteIsSpilledAndReplayed() throws Exception {
+        var transport = new FailingTransport();
+        transport.createGroup(STREAM, GROUP);
+        var spillLog = spillLog();
+        BlockingQueue<BufferedMessage> buffer = new LinkedBlockingQueue<>();
+        var emitter = batchEmitter(transport, spillLog, buffer);
+        emitter.start();
+
+        transport.failing = true;
+        for (int i = 0; i < 5; i++) {
+            buffer.add(BufferedMessage.received(body(i)));
+        }
+        await().atMost(Duration.ofSeconds(5)).until(() -> spillLog.getPendingCount() == 5);
+        assertEquals(0, transport.appended(STREAM));
+
+        transport.failing = false;
+        await().atMost(Duration.ofSeconds(5)).until(spillLog::isEmpty);
+        emitter.stop();
+
+        var written = transport.readGroup(STREAM, GROUP, "a", 10, Duration.ZERO);
+        assertEquals(5, written.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(body(i), body(written.get(i)));
+        }
+        assertEquals(5, spillLog.getReplayedCount());
+    }
+
+    private SpillLog spillLog() throws Exception {
+        var spillLog = new SpillLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spillLog, "enabled", true);
+        ReflectionTestUtils.setField(spillLog, "directory", directory);
+        ReflectionTestUtils.setField(spillLog, "segmentSize", 4096);
+        ReflectionTestUtils.setField(spillLog, "maxSegments", 4);
+        spillLog.init();
+        return spillLog;
+    }
+
+    private static BatchEmitter batchEmitter(InMemoryTransport transport, SpillLog spillLog,
+                                             BlockingQueue<BufferedMessage> buffer) {
+        // Leaseless leader, script emit mode and distributed dedup are off
+        var leaderElection = LeaderElections.leaseless();
+        var payloadEncoder = new StreamPayloadEncoder();
+        ReflectionTestUtils.setField(payloadEncoder, "codecName", "json");
+        payloadEncoder.init();
+
+        var emitter = new BatchEmitter(List.of(buffer), transport, new ChannelTopic(STREAM), spillLog, new ShadowWindow(),
+                null, leaderElection, new BatchClaimService(null, null),
+                new ScriptedBatchAppender(null, null, null, null, null, null), payloadEncoder, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emitter, "bridgeGroupSize", 1);
+        ReflectionTestUtils.setField(emitter, "batchDrainSize", 100);
+        ReflectionTestUtils.setField(emitter, "batchLingerMs", 1L);
+        ReflectionTestUtils.setField(emitter, "envelopeSize", 1);
+        ReflectionTestUtils.setField(emitter, "streamShards", 1);
+        emitter.setEmitting(true);
+        emitter.init();
+        return emitter;
+    }
+
+    private static byte[] body(ByteRecord record) {
+        return record.getValue().entrySet().stream()
+                .filter(field -> Arrays.equals(field.getKey(), BODY_FIELD))
+                .map(Map.Entry::getValue).findFirst().orElseThrow();
+    }
+
+    private static byte[] body(int i) {
+        return ("{\"message_id\":\"spill-" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+
+    // Fails every append while the broker is down
+    private static final class FailingTransport extends InMemoryTransport {
+
+        private volatile boolean failing;
+
+        @Override
+        public void append(List<? extends MapRecord<byte[], byte[], byte[]>> entries) {
+            if (failing) throw new IllegalStateException("Broker is down");
+            super.append(entries);
+        }
+    }
+}
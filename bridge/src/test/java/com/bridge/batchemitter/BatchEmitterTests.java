@@ -0,0 +1,71 @@
+package com.bridge.batchemitter;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.leader.LeaderElections;
+import com.bridge.leader.ShadowWindow;
+import com.bridge.leader.TakeoverReconciler;
+import com.bridge.service.BatchClaimService;
+import com.bridge.spill.SpillLog;
+import com.bridge.util.RedisTestSupport;
+import com.common.transport.RedisTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchEmitterTests extends RedisTestSupport {
+
+    @Test
+    void testStopWritesTheBatchAFlusherWasStillCollecting() {
+        BlockingQueue<BufferedMessage> buffer = new LinkedBlockingQueue<>();
+        var emitter = batchEmitter("emitter-stop", buffer);
+        emitter.start();
+
+        // The flusher takes the messages and lingers for more until it is interrupted
+        for (int i = 0; i < 3; i++) {
+            buffer.add(BufferedMessage.received(("{\"message_id\":\"stop-" + i + "\"}").getBytes(StandardCharsets.UTF_8)));
+        }
+        await().atMost(Duration.ofSeconds(5)).until(buffer::isEmpty);
+        // Buffered after the flusher took its batch, drained by stop once the flusher is gone
+        buffer.add(BufferedMessage.received("{\"message_id\":\"stop-3\"}".getBytes(StandardCharsets.UTF_8)));
+        emitter.stop();
+
+        assertEquals(4, redisTemplate.opsForStream().size("emitter-stop"));
+        assertTrue(buffer.isEmpty());
+    }
+
+    private static BatchEmitter batchEmitter(String stream, BlockingQueue<BufferedMessage> buffer) {
+        var leaderElection = LeaderElections.holdingLease(redisTemplate, TimeUnit.MINUTES.toNanos(1));
+        var topic = new ChannelTopic(stream);
+        var spillLog = new SpillLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spillLog, "enabled", false);
+        var payloadEncoder = new StreamPayloadEncoder();
+        ReflectionTestUtils.setField(payloadEncoder, "codecName", "json");
+        payloadEncoder.init();
+
+        var emitter = new BatchEmitter(List.of(buffer), new RedisTransport(redisTemplate), topic, spillLog, new ShadowWindow(),
+                new TakeoverReconciler(redisTemplate, topic), leaderElection, new BatchClaimService(redisTemplate, leaderElection),
+                new ScriptedBatchAppender(redisTemplate, topic, null, leaderElection, null, payloadEncoder),
+                payloadEncoder, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emitter, "bridgeGroupSize", 1);
+        ReflectionTestUtils.setField(emitter, "batchDrainSize", 100);
+        // Longer than stop waits for the flushers
+        ReflectionTestUtils.setField(emitter, "batchLingerMs", 60_000L);
+        ReflectionTestUtils.setField(emitter, "envelopeSize", 1);
+        ReflectionTestUtils.setField(emitter, "streamShards", 1);
+        emitter.setEmitting(true);
+        emitter.init();
+        return emitter;
+    }
+}
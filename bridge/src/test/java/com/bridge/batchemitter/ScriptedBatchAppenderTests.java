@@ -0,0 +1,110 @@
+package com.bridge.batchemitter;
+
+import com.bridge.leader.LeaderElection;
+import com.bridge.service.BatchClaimService;
+import com.bridge.util.RedisTestSupport;
+import com.common.codec.Envelope;
+import com.common.retention.StreamRetentionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.bridge.config.Constants.EMIT_MODE_SCRIPT;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ScriptedBatchAppenderTests extends RedisTestSupport {
+
+    private static final byte[] BODY_FIELD = "body".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testRetriedBatchIsSkipped_evenAfterScriptFlush() {
+        var appender = scriptedBatchAppender("append-retry", streamRetentionService("append-retry"));
+        List<byte[]> batch = batch(500);
+
+        assertEquals(500, appender.append(batch, BODY_FIELD, 1, 0));
+        assertEquals(0, appender.append(batch, BODY_FIELD, 1, 0));
+        redisTemplate.execute(connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        }, true);
+        assertEquals(0, appender.append(batch.subList(0, 100), BODY_FIELD, 1, 0));
+
+        assertEquals(500, redisTemplate.opsForStream().size("append-retry"));
+    }
+
+    @Test
+    void testMessagesArePackedIntoEnvelopes() {
+        var appender = scriptedBatchAppender("append-envelope", streamRetentionService("append-envelope"));
+        List<byte[]> batch = batch(250);
+
+        long ingressMillis = System.currentTimeMillis();
+        assertEquals(250, appender.append(batch, BODY_FIELD, 100, ingressMillis));
+
+        List<byte[]> unpacked = new ArrayList<>();
+        redisTemplate.execute(connection -> {
+            for (ByteRecord entry : connection.streamCommands().xRange("append-envelope".getBytes(StandardCharsets.UTF_8), Range.unbounded(), Limit.unlimited())) {
+                List<byte[]> values = List.copyOf(entry.getValue().values());
+                unpacked.addAll(Envelope.unpack(values.get(0)));
+                assertEquals(String.valueOf(ingressMillis), new String(values.get(1), StandardCharsets.US_ASCII));
+            }
+            return null;
+        }, true);
+        assertEquals(3, redisTemplate.opsForStream().size("append-envelope"));
+        assertEquals(batch.stream().map(String::new).toList(), unpacked.stream().map(String::new).toList());
+    }
+
+    @Test
+    void testStreamIsTrimmedApproximately_toRetentionCutoff() {
+        var retention = streamRetentionService("append-trim");
+        var appender = scriptedBatchAppender("append-trim", retention);
+        for (int i = 0; i < 10; i++) {
+            appender.append(batch(1000), BODY_FIELD, 1, 0);
+        }
+        RecordId cutoff = redisTemplate.opsForStream()
+                .range("append-trim", Range.unbounded(), Limit.limit().count(5001)).get(5000).getId();
+        ReflectionTestUtils.setField(retention, "cutoff", cutoff);
+
+        appender.append(batch(1000), BODY_FIELD, 1, 0);
+
+        long length = redisTemplate.opsForStream().size("append-trim");
+        // MINID ~ only removes whole macro nodes, so up to one node before the cutoff remains
+        assertTrue(length >= 6000 && length < 6000 + 100, "length " + length);
+    }
+
+    private static StreamRetentionService streamRetentionService(String stream) {
+        return new StreamRetentionService(redisTemplate, List.of(stream), 0, 0, 10_000, new SimpleMeterRegistry());
+    }
+
+    private static ScriptedBatchAppender scriptedBatchAppender(String stream, StreamRetentionService retention) {
+        var leaderElection = new LeaderElection(redisTemplate, event -> {});
+        var batchClaimService = new BatchClaimService(redisTemplate, leaderElection);
+        ReflectionTestUtils.setField(batchClaimService, "keyPrefix", stream);
+
+        var payloadEncoder = new StreamPayloadEncoder();
+        ReflectionTestUtils.setField(payloadEncoder, "codecName", "json");
+        payloadEncoder.init();
+        var appender = new ScriptedBatchAppender(redisTemplate, new ChannelTopic(stream), batchClaimService,
+                leaderElection, retention, payloadEncoder);
+        ReflectionTestUtils.setField(appender, "emitMode", EMIT_MODE_SCRIPT);
+        return appender;
+    }
+
+    private static List<byte[]> batch(int size) {
+        List<byte[]> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(("{\"message_id\":\"" + UUID.randomUUID() + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        return batch;
+    }
+}
@@ -0,0 +1,112 @@
+package com.bridge.batchemitter;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.leader.LeaderElection;
+import com.bridge.leader.LeaderElections;
+import com.bridge.leader.LeadershipAcquiredEvent;
+import com.bridge.leader.ShadowWindow;
+import com.bridge.leader.TakeoverReconciler;
+import com.bridge.service.BatchClaimService;
+import com.bridge.spill.SpillLog;
+import com.bridge.util.RedisTestSupport;
+import com.common.transport.RedisTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class TakeoverTests extends RedisTestSupport {
+
+    @Test
+    void testTakeoverEmitsOnlyWhatThePreviousLeaderMissed_withoutGaps() {
+        var leaderElection = LeaderElections.holdingLease(redisTemplate, TimeUnit.SECONDS.toNanos(10));
+        var shadowWindow = shadowWindow();
+        var emitter = batchEmitter("takeover", new ArrayList<>(), shadowWindow, leaderElection);
+
+        // The standby shadowed 100 messages, the old leader wrote the first 60 before it crashed
+        shadowWindow.record(bodies(0, 100));
+        bodies(0, 60).forEach(body -> redisTemplate.opsForStream()
+                .add(MapRecord.create("takeover", Map.of("body", new String(body, StandardCharsets.UTF_8)))));
+
+        emitter.start();
+        emitter.onLeadershipAcquired(new LeadershipAcquiredEvent(0));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> redisTemplate.opsForStream().size("takeover") >= 100);
+        List<String> written = redisTemplate.opsForStream().range("takeover", Range.unbounded()).stream()
+                .map(entry -> (String) entry.getValue().get("body"))
+                .toList();
+        assertEquals(bodies(0, 100).stream().map(String::new).toList(), written);
+        assertEquals(-1, shadowWindow.oldestTimestamp());
+        emitter.stop();
+    }
+
+    @Test
+    void testLeaderStopsWriting_onceItsLeaseLapses() {
+        var leaderElection = LeaderElections.holdingLease(redisTemplate, -1);
+        var shadowWindow = shadowWindow();
+        BlockingQueue<BufferedMessage> buffer = new LinkedBlockingQueue<>();
+        var emitter = batchEmitter("lapsed", List.of(buffer), shadowWindow, leaderElection);
+        emitter.setEmitting(true);
+
+        emitter.start();
+        buffer.add(BufferedMessage.received(bodies(0, 1).get(0)));
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> shadowWindow.oldestTimestamp() >= 0);
+        assertFalse(redisTemplate.hasKey("lapsed"));
+        emitter.stop();
+    }
+
+    private static ShadowWindow shadowWindow() {
+        var shadowWindow = new ShadowWindow();
+        ReflectionTestUtils.setField(shadowWindow, "windowMs", 60_000L);
+        ReflectionTestUtils.setField(shadowWindow, "maxEntries", 1000);
+        return shadowWindow;
+    }
+
+    private static BatchEmitter batchEmitter(String stream, List<BlockingQueue<BufferedMessage>> bufferContainer,
+                                             ShadowWindow shadowWindow, LeaderElection leaderElection) {
+        var topic = new ChannelTopic(stream);
+        var reconciler = new TakeoverReconciler(redisTemplate, topic);
+        ReflectionTestUtils.setField(reconciler, "leaseMs", 1000L);
+        ReflectionTestUtils.setField(reconciler, "streamShards", 1);
+        var spillLog = new SpillLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spillLog, "enabled", false);
+        var payloadEncoder = new StreamPayloadEncoder();
+        ReflectionTestUtils.setField(payloadEncoder, "codecName", "json");
+        payloadEncoder.init();
+
+        var emitter = new BatchEmitter(bufferContainer, new RedisTransport(redisTemplate), topic, spillLog, shadowWindow,
+                reconciler, leaderElection, new BatchClaimService(redisTemplate, leaderElection),
+                new ScriptedBatchAppender(redisTemplate, topic, null, leaderElection, null, payloadEncoder),
+                payloadEncoder, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(emitter, "bridgeGroupSize", 1);
+        ReflectionTestUtils.setField(emitter, "batchDrainSize", 100);
+        ReflectionTestUtils.setField(emitter, "batchLingerMs", 1L);
+        ReflectionTestUtils.setField(emitter, "envelopeSize", 1);
+        ReflectionTestUtils.setField(emitter, "streamShards", 1);
+        emitter.init();
+        return emitter;
+    }
+
+    private static List<byte[]> bodies(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> ("{\"message_id\":\"takeover-" + i + "\"}").getBytes(StandardCharsets.UTF_8))
+                .toList();
+    }
+}
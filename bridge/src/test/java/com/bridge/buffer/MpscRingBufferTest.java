@@ -0,0 +1,76 @@
+package com.bridge.buffer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MpscRingBufferTest {
+
+    @Test
+    void testBoundedFifo() {
+        var buffer = new MpscRingBuffer<String>(3);
+
+        assertEquals(4, buffer.remainingCapacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer("m" + i));
+        }
+        assertFalse(buffer.offer("overflow"));
+        assertEquals("m0", buffer.poll());
+        assertTrue(buffer.offer("m4"));
+
+        List<String> drained = new ArrayList<>();
+        assertEquals(4, buffer.drainTo(drained, 10));
+        assertEquals(List.of("m1", "m2", "m3", "m4"), drained);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void testMultipleProducers_noLossAndPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 200_000;
+        var buffer = new MpscRingBuffer<long[]>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch start = new CountDownLatch(1);
+
+        for (int p = 0; p < producers; p++) {
+            int producer = p;
+            executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < perProducer; i++) {
+                    buffer.put(new long[]{producer, i});
+                }
+                return null;
+            });
+        }
+        start.countDown();
+
+        long[] next = new long[producers];
+        List<long[]> batch = new ArrayList<>();
+        int received = 0;
+        while (received < producers * perProducer) {
+            long[] first = buffer.poll(5, TimeUnit.SECONDS);
+            if (first == null) break;
+            batch.add(first);
+            buffer.drainTo(batch, 100);
+            for (long[] element : batch) {
+                assertEquals(next[(int) element[0]]++, element[1]);
+            }
+            received += batch.size();
+            batch.clear();
+        }
+        executor.shutdown();
+
+        assertEquals(producers * perProducer, received);
+        assertEquals(0, buffer.size());
+    }
+}
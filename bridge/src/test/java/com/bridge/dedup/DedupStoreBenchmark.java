@@ -0,0 +1,74 @@
+package com.bridge.dedup;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.bridge.config.Constants.DEDUP_GENERATIONS;
+import static com.bridge.config.Constants.LOCK_TTL_MS;
+
+/**
+ * Compares retained heap and GC time of {@link MapDedupStore} and {@link GenerationalDedupStore}.
+ * Feeds a steady rate of {@link #IDS_PER_SECOND} random UUIDs in real time, calling expire
+ * as LockService does, so the window holds ~15s worth of IDs once it is warmed up.
+ * Run each store in a separate JVM with the same -Xmx, e.g.
+ * java -Xmx2g -cp bridge/target/test-classes:bridge/target/classes com.bridge.dedup.DedupStoreBenchmark map 30
+ */
+public class DedupStoreBenchmark {
+
+    private static final int IDS_PER_SECOND = 200_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        String type = args.length > 0 ? args[0] : "generational";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        DedupStore store = "map".equals(type)
+                ? new MapDedupStore(LOCK_TTL_MS)
+                : new GenerationalDedupStore(LOCK_TTL_MS, DEDUP_GENERATIONS, 256);
+
+        long baseHeap = usedHeapAfterGc();
+        long gcTimeBefore = gcTimeMs();
+        long gcCountBefore = gcCount();
+        long busyNanos = 0;
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int second = 0; second < seconds; second++) {
+            long tickStart = System.nanoTime();
+            for (int i = 0; i < IDS_PER_SECOND; i++) {
+                store.tryAdd(new UUID(random.nextLong(), random.nextLong()).toString());
+            }
+            store.expire(System.currentTimeMillis());
+            long tickNanos = System.nanoTime() - tickStart;
+            busyNanos += tickNanos;
+            Thread.sleep(Math.max(0, 1000 - tickNanos / 1_000_000));
+        }
+
+        long gcTimeMs = gcTimeMs() - gcTimeBefore;
+        long gcCount = gcCount() - gcCountBefore;
+        long retainedHeap = usedHeapAfterGc() - baseHeap;
+
+        System.out.printf("store=%s ids=%d busy=%dms retainedHeap=%dMB gcCount=%d gcTime=%dms%n",
+                type, (long) IDS_PER_SECOND * seconds, busyNanos / 1_000_000,
+                retainedHeap / (1024 * 1024), gcCount, gcTimeMs);
+        // keep the store reachable until the heap was measured
+        System.out.println(store.tryAdd(UUID.randomUUID().toString()));
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long gcTimeMs() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream()
+                .mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+}
@@ -0,0 +1,57 @@
+package com.bridge.dedup;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GenerationalDedupStoreTest {
+
+    private static final long TTL_MS = 300;
+
+    @Test
+    void testDuplicatesRejected_beyondInitialCapacity() {
+        var store = new GenerationalDedupStore(TTL_MS, 4, 16);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            ids.add(UUID.randomUUID().toString());
+        }
+
+        ids.forEach(id -> assertTrue(store.tryAdd(id)));
+        ids.forEach(id -> assertFalse(store.tryAdd(id)));
+        assertEquals(ids.size(), store.size());
+    }
+
+    @Test
+    void testIdsRetainedForTtl_thenRotatedOut() {
+        var store = new GenerationalDedupStore(TTL_MS, 4, 16);
+        long now = System.currentTimeMillis();
+        assertTrue(store.tryAdd("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+
+        // 3 generations of 100ms each still cover the TTL
+        for (int i = 1; i <= 3; i++) {
+            store.expire(now + i * (TTL_MS / 3));
+            assertFalse(store.tryAdd("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+        }
+        // the re-adds above were rejected, so the original entry is the one rotated out now
+        store.expire(now + 4 * (TTL_MS / 3));
+        assertTrue(store.tryAdd("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+    }
+
+    @Test
+    void testNonUuidAndZeroIds() {
+        var store = new GenerationalDedupStore(TTL_MS, 2, 16);
+
+        assertTrue(store.tryAdd("not-a-uuid"));
+        assertFalse(store.tryAdd("not-a-uuid"));
+        assertTrue(store.tryAdd("00000000-0000-0000-0000-000000000000"));
+        assertFalse(store.tryAdd("00000000-0000-0000-0000-000000000000"));
+        assertTrue(store.tryAdd("3F2504E0-4F89-11D3-9A0C-0305E82C3301"));
+        assertFalse(store.tryAdd("3f2504e0-4f89-11d3-9a0c-0305e82c3301"));
+    }
+}
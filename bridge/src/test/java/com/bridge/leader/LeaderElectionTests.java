@@ -0,0 +1,71 @@
+package com.bridge.leader;
+
+import com.bridge.util.RedisTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LeaderElectionTests extends RedisTestSupport {
+
+    private static final long LEASE_MS = 1000;
+    private static final long RENEW_INTERVAL_MS = LEASE_MS / 3;
+
+    @Test
+    void testStandbyTakesOverWithinLease_afterLeaderCrash() {
+        List<Object> standbyEvents = new CopyOnWriteArrayList<>();
+        var leader = leaderElection("failover", event -> {});
+        var standby = leaderElection("failover", standbyEvents::add);
+
+        leader.start();
+        await().atMost(Duration.ofSeconds(5)).until(leader::isLeader);
+        standby.start();
+        await().pollDelay(Duration.ofMillis(RENEW_INTERVAL_MS * 2)).until(() -> true);
+        assertFalse(standby.isLeader());
+
+        // Crash: renewals stop, the lease is not released
+        leader.halt();
+        long crashedAt = System.currentTimeMillis();
+
+        await().atMost(Duration.ofMillis(LEASE_MS * 3)).until(standby::isLeader);
+        long takeoverMs = System.currentTimeMillis() - crashedAt;
+
+        assertTrue(takeoverMs <= LEASE_MS + RENEW_INTERVAL_MS + 500, () -> "Took over after " + takeoverMs + " ms");
+        assertTrue(standby.getLastFailoverMs() >= 0);
+        assertTrue(standby.getLastFailoverMs() <= LEASE_MS + RENEW_INTERVAL_MS + 500);
+        assertTrue(standbyEvents.stream().anyMatch(LeadershipAcquiredEvent.class::isInstance));
+
+        standby.stop();
+    }
+
+    @Test
+    void testGracefulStop_handsOverImmediately() {
+        var leader = leaderElection("graceful", event -> {});
+        var standby = leaderElection("graceful", event -> {});
+
+        leader.start();
+        await().atMost(Duration.ofSeconds(5)).until(leader::isLeader);
+        standby.start();
+
+        leader.stop();
+        long stoppedAt = System.currentTimeMillis();
+        await().atMost(Duration.ofMillis(LEASE_MS)).until(standby::isLeader);
+
+        assertTrue(System.currentTimeMillis() - stoppedAt <= RENEW_INTERVAL_MS + 500);
+        standby.stop();
+    }
+
+    private static LeaderElection leaderElection(String key, ApplicationEventPublisher publisher) {
+        var election = new LeaderElection(redisTemplate, publisher);
+        election.setEnabled(true);
+        election.setLeaseKey("bridge:leader:" + key);
+        election.setLeaseMs(LEASE_MS);
+        return election;
+    }
+}
@@ -0,0 +1,32 @@
+package com.bridge.leader;
+
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * Leader elections for the tests of other packages, set up through the package-private setters.
+ */
+public final class LeaderElections {
+
+    private LeaderElections() {
+    }
+
+    /**
+     * @return a started election that leads without a lease, as with redis.leader.enabled=false
+     */
+    public static LeaderElection leaseless() {
+        var leaderElection = new LeaderElection(null, event -> {});
+        leaderElection.setEnabled(false);
+        leaderElection.start();
+        return leaderElection;
+    }
+
+    /**
+     * @return a leader whose lease is valid for the given nanoseconds from now, negative for a lapsed one
+     */
+    public static LeaderElection holdingLease(RedisTemplate<String, String> redisTemplate, long validForNanos) {
+        var leaderElection = new LeaderElection(redisTemplate, event -> {});
+        leaderElection.setLeader(true);
+        leaderElection.setLeaseValidUntil(System.nanoTime() + validForNanos);
+        return leaderElection;
+    }
+}
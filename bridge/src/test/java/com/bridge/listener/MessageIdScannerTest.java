@@ -0,0 +1,34 @@
+package com.bridge.listener;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MessageIdScannerTest {
+
+    @Test
+    void testScan() {
+        assertEquals("3f2504e0-4f89-11d3-9a0c-0305e82c3301",
+                scan("{\"message_id\":\"3f2504e0-4f89-11d3-9a0c-0305e82c3301\"}"));
+        assertEquals("abc", scan("{ \"other\" : \"message_id\", \"message_id\" :\n \"abc\" }"));
+        assertEquals("a\\\"b", scan("{\"message_id\":\"a\\\"b\"}"));
+    }
+
+    @Test
+    void testScan_notFound() {
+        assertEquals(MessageIdScanner.NOT_FOUND, MessageIdScanner.scan(bytes("{\"id\":\"abc\"}")));
+        assertEquals(MessageIdScanner.NOT_FOUND, MessageIdScanner.scan(bytes("{\"message_id\":42}")));
+        assertEquals(MessageIdScanner.NOT_FOUND, MessageIdScanner.scan(bytes("{\"message_id\":\"abc")));
+    }
+
+    private static String scan(String json) {
+        byte[] body = bytes(json);
+        return MessageIdScanner.toString(body, MessageIdScanner.scan(body));
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,60 @@
+package com.bridge.listener;
+
+import com.bridge.buffer.BufferedMessage;
+import com.bridge.service.LockService;
+import com.bridge.spill.SpillLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ShardedMessageSubscriberTest {
+
+    @Test
+    void testMessagePublishedTwiceIsBufferedOnce() {
+        List<BlockingQueue<BufferedMessage>> bufferContainer = new ArrayList<>();
+        var subscriber = shardedMessageSubscriber(bufferContainer, 4);
+
+        for (int i = 0; i < 100; i++) {
+            subscriber.onMessage(body(i));
+            subscriber.onMessage(body(i));
+        }
+
+        assertEquals(4, bufferContainer.size());
+        assertEquals(100, bufferContainer.stream().mapToInt(BlockingQueue::size).sum());
+    }
+
+    private static ShardedMessageSubscriber shardedMessageSubscriber(List<BlockingQueue<BufferedMessage>> bufferContainer,
+                                                                     int shards) {
+        ObjectProvider<BlockingQueue<BufferedMessage>> bufferProvider = new ObjectProvider<>() {
+            @Override
+            public BlockingQueue<BufferedMessage> getObject() {
+                return new LinkedBlockingQueue<>();
+            }
+        };
+
+        var lockService = new LockService();
+        ReflectionTestUtils.setField(lockService, "dedupStoreType", "generational");
+        ReflectionTestUtils.setField(lockService, "initialCapacity", 256);
+        lockService.init();
+        var spillLog = new SpillLog(new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(spillLog, "enabled", false);
+
+        var subscriber = new ShardedMessageSubscriber(bufferContainer, bufferProvider, lockService, spillLog);
+        ReflectionTestUtils.setField(subscriber, "bridgeGroupSize", shards);
+        subscriber.init();
+        return subscriber;
+    }
+
+    private static byte[] body(int i) {
+        return ("{\"message_id\":\"sharded-" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,74 @@
+package com.bridge.service;
+
+import com.bridge.leader.LeaderElection;
+import com.bridge.util.RedisTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static com.bridge.config.Constants.DEDUP_MODE_DISTRIBUTED;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchClaimServiceTests extends RedisTestSupport {
+
+    private static final String STREAM = "claims";
+
+    @Test
+    void testEveryMessageIsClaimedByExactlyOneInstance() {
+        var first = batchClaimService();
+        var second = batchClaimService();
+        List<byte[]> batch = batch(1000);
+
+        List<byte[]> firstWon = first.claim(STREAM, batch.subList(0, 600));
+        List<byte[]> secondWon = second.claim(STREAM, batch);
+
+        assertEquals(600, firstWon.size());
+        assertEquals(400, secondWon.size());
+        assertTrue(secondWon.stream().noneMatch(firstWon::contains));
+    }
+
+    @Test
+    void testInstanceKeepsItsClaims_whenBatchIsRetried() {
+        var first = batchClaimService();
+        var second = batchClaimService();
+        List<byte[]> batch = batch(100);
+
+        assertEquals(100, first.claim(STREAM, batch).size());
+        assertEquals(0, second.claim(STREAM, batch).size());
+        assertEquals(batch, first.claim(STREAM, batch));
+    }
+
+    @Test
+    void testMessagesWithoutMessageIdAreWrittenByEveryInstance_withoutBeingClaimed() {
+        var first = batchClaimService();
+        var second = batchClaimService();
+        byte[] anonymous = "{\"payload\":1}".getBytes(StandardCharsets.UTF_8);
+        List<byte[]> batch = new ArrayList<>(batch(2));
+        batch.add(1, anonymous);
+
+        assertEquals(batch, first.claim(STREAM, batch));
+        assertEquals(List.of(anonymous), second.claim(STREAM, batch));
+        assertEquals(List.of(anonymous), second.claim(STREAM, List.of(anonymous)));
+        assertTrue(first.bucketKeys(STREAM).stream().noneMatch(key -> redisTemplate.opsForHash().hasKey(key, "")));
+    }
+
+    private static BatchClaimService batchClaimService() {
+        var service = new BatchClaimService(redisTemplate, new LeaderElection(redisTemplate, event -> {}));
+        ReflectionTestUtils.setField(service, "dedupMode", DEDUP_MODE_DISTRIBUTED);
+        ReflectionTestUtils.setField(service, "keyPrefix", "test-dedup");
+        return service;
+    }
+
+    private static List<byte[]> batch(int size) {
+        List<byte[]> batch = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            batch.add(("{\"message_id\":\"" + UUID.randomUUID() + "\"}").getBytes(StandardCharsets.UTF_8));
+        }
+        return batch;
+    }
+}
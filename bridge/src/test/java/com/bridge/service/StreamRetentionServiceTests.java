@@ -0,0 +1,89 @@
+package com.bridge.service;
+
+import com.bridge.util.RedisTestSupport;
+import com.common.retention.StreamRetentionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.core.RedisCallback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamRetentionServiceTests extends RedisTestSupport {
+
+    @Test
+    void testStreamIsTrimmedToMaxLen_whenEverythingIsAcknowledged() {
+        String stream = "retention-acked";
+        addEntries(stream, 5000);
+        redisTemplate.opsForStream().createGroup(stream, ReadOffset.latest(), "group");
+        var meterRegistry = new SimpleMeterRegistry();
+        var retention = streamRetentionService(stream, 1000, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            retention.trim();
+        }
+
+        long length = redisTemplate.opsForStream().size(stream);
+        assertTrue(length >= 1000 && length < 1000 + 100, "length " + length);
+        assertEquals(5000 - length, retention.getTrimmedCount());
+        assertEquals(5000 - length, meterRegistry.get(StreamRetentionService.TRIMMED_METRIC)
+                .tag(StreamRetentionService.STREAM_TAG, stream).functionCounter().count());
+        assertEquals(0, retention.getLaggingGroupCount());
+    }
+
+    @Test
+    void testPendingEntriesAreNeverTrimmed() {
+        String stream = "retention-pending";
+        List<RecordId> ids = addEntries(stream, 5000);
+        redisTemplate.opsForStream().createGroup(stream, ReadOffset.from("0"), "group");
+        readGroup(stream, 2000);
+        // Everything but the 1500th entry is acknowledged
+        RecordId pending = ids.get(1500);
+        redisTemplate.opsForStream().acknowledge(stream, "group",
+                ids.subList(0, 2000).stream().filter(id -> !id.equals(pending)).toArray(RecordId[]::new));
+        var meterRegistry = new SimpleMeterRegistry();
+        var retention = streamRetentionService(stream, 1000, meterRegistry);
+
+        for (int i = 0; i < 5; i++) {
+            retention.trim();
+        }
+
+        assertEquals(pending, retention.getCutoff());
+        assertFalse(redisTemplate.opsForStream().range(stream, Range.closed(pending.getValue(), pending.getValue())).isEmpty());
+        assertTrue(redisTemplate.opsForStream().size(stream) > 5000 - 1500 - 100);
+        assertEquals(1, meterRegistry.get(StreamRetentionService.LAGGING_GROUPS_METRIC)
+                .tag(StreamRetentionService.STREAM_TAG, stream).gauge().value());
+    }
+
+    private static StreamRetentionService streamRetentionService(String stream, long maxLen, SimpleMeterRegistry meterRegistry) {
+        return new StreamRetentionService(redisTemplate, List.of(stream), maxLen, 0, 10_000, meterRegistry);
+    }
+
+    private static List<RecordId> addEntries(String stream, int count) {
+        List<RecordId> ids = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ids.add(redisTemplate.opsForStream().add(stream, Map.of("body", "message " + i)));
+        }
+        return ids;
+    }
+
+    // Delivers count entries to the group without acknowledging them, as a raw command to avoid the generic varargs of read
+    private static void readGroup(String stream, int count) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XREADGROUP",
+                bytes("GROUP"), bytes("group"), bytes("consumer"), bytes("COUNT"), bytes(String.valueOf(count)),
+                bytes("STREAMS"), bytes(stream), bytes(">")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,169 @@
+package com.bridge.spill;
+
+import com.bridge.buffer.BufferedMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillLogTest {
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void testOverflowSpilledAndReplayedInOrder() throws Exception {
+        var spillLog = spillLog(64, 4);
+        var buffer = new ArrayBlockingQueue<BufferedMessage>(1);
+
+        assertTrue(spillLog.offer(buffer, BufferedMessage.received(bytes("m0"))));
+        for (int i = 1; i <= 10; i++) {
+            assertTrue(spillLog.offer(buffer, BufferedMessage.received(bytes("m" + i))));
+        }
+        assertEquals(1, buffer.size());
+        assertEquals(10, spillLog.getPendingCount());
+
+        // Buffer has room again, but older messages are still spilled
+        buffer.clear();
+        assertTrue(spillLog.offer(buffer, BufferedMessage.received(bytes("m11"))));
+        assertTrue(buffer.isEmpty());
+
+        StringBuilder replayed = new StringBuilder();
+        while (!spillLog.isEmpty()) {
+            spillLog.readBatch(3).forEach(message -> replayed.append(new String(message.body(), StandardCharsets.UTF_8)));
+            spillLog.acknowledge();
+        }
+        assertEquals("m1m2m3m4m5m6m7m8m9m10m11", replayed.toString());
+        assertEquals(11, spillLog.getReplayedCount());
+        assertEquals(11, meterRegistry.get(SpillLog.REPLAYED_METRIC).functionCounter().count());
+        assertEquals(0, meterRegistry.get(SpillLog.PENDING_METRIC).gauge().value());
+        try (var files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testDiskUsageBounded() throws Exception {
+        var spillLog = spillLog(48, 2);
+
+        // 8 byte header + 2 records of 12 + 8 bytes per segment
+        for (int i = 0; i < 4; i++) {
+            assertTrue(spillLog.append(message("message" + i)));
+        }
+        assertFalse(spillLog.append(message("message4")));
+        assertEquals(1, spillLog.getDroppedCount());
+        assertEquals(1, meterRegistry.get(SpillLog.DROPPED_METRIC).functionCounter().count());
+        assertEquals(4, meterRegistry.get(SpillLog.PENDING_METRIC).gauge().value());
+    }
+
+    @Test
+    void testConcurrentOffersKeepTheOrderOfEachPublisher() throws Exception {
+        int publishers = 4;
+        int messages = 5000;
+        var spillLog = spillLog(64 * 1024, 16);
+        var buffer = new ArrayBlockingQueue<BufferedMessage>(8);
+        List<String> delivered = new ArrayList<>();
+        AtomicBoolean publishing = new AtomicBoolean(true);
+
+        // Replays the log once the buffer has no backlog left, otherwise drains the buffer, like the BatchEmitter
+        Thread emitter = new Thread(() -> {
+            List<BufferedMessage> batch = new ArrayList<>();
+            while (publishing.get() || !buffer.isEmpty() || !spillLog.isEmpty()) {
+                if (!spillLog.isEmpty() && buffer.isEmpty()) {
+                    batch.addAll(spillLog.readBatch(16));
+                    spillLog.acknowledge();
+                } else {
+                    buffer.drainTo(batch);
+                }
+                batch.forEach(message -> delivered.add(new String(message.body(), StandardCharsets.UTF_8)));
+                batch.clear();
+            }
+        });
+        emitter.start();
+        ExecutorService executor = Executors.newFixedThreadPool(publishers);
+        for (int publisher = 0; publisher < publishers; publisher++) {
+            int id = publisher;
+            executor.execute(() -> {
+                for (int i = 0; i < messages; i++) {
+                    assertTrue(spillLog.offer(buffer, message(id + ":" + i)));
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+        publishing.set(false);
+        emitter.join(30_000);
+
+        assertEquals(publishers * messages, delivered.size());
+        int[] next = new int[publishers];
+        for (String message : delivered) {
+            String[] parts = message.split(":");
+            int publisher = Integer.parseInt(parts[0]);
+            assertEquals(next[publisher]++, Integer.parseInt(parts[1]), "publisher " + publisher);
+        }
+        assertTrue(spillLog.getSpilledCount() > 0);
+    }
+
+    @Test
+    void testPendingMessagesRecoveredAfterRestart() throws Exception {
+        var spillLog = spillLog(128, 4);
+        for (int i = 0; i < 5; i++) {
+            spillLog.append(message("m" + i));
+        }
+        spillLog.readBatch(2);
+        spillLog.acknowledge();
+        spillLog.close();
+
+        var recovered = spillLog(128, 4);
+        assertEquals(3, recovered.getPendingCount());
+        assertEquals(List.of("m2", "m3", "m4"), recovered.readBatch(10).stream()
+                .map(message -> new String(message.body(), StandardCharsets.UTF_8)).toList());
+    }
+
+    @Test
+    void testReplayedMessagesKeepTheirIngressTime() throws Exception {
+        var spillLog = spillLog(64, 4);
+        long ingressMillis = System.currentTimeMillis() - 5_000;
+        spillLog.append(BufferedMessage.receivedAt(bytes("m0"), ingressMillis));
+        spillLog.close();
+
+        long replayedIngress = spillLog(64, 4).readBatch(1).get(0).ingressMillis();
+        // Converted through System.nanoTime() twice, so within a few milliseconds
+        assertTrue(Math.abs(replayedIngress - ingressMillis) <= 10, "ingress " + replayedIngress + ", expected " + ingressMillis);
+    }
+
+    private SpillLog spillLog(int segmentSize, int maxSegments) throws Exception {
+        var spillLog = new SpillLog(meterRegistry);
+        ReflectionTestUtils.setField(spillLog, "enabled", true);
+        ReflectionTestUtils.setField(spillLog, "directory", directory);
+        ReflectionTestUtils.setField(spillLog, "segmentSize", segmentSize);
+        ReflectionTestUtils.setField(spillLog, "maxSegments", maxSegments);
+        spillLog.init();
+        return spillLog;
+    }
+
+    private static BufferedMessage message(String body) {
+        return BufferedMessage.received(bytes(body));
+    }
+
+    private static byte[] bytes(String body) {
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
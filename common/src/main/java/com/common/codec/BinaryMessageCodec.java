@@ -0,0 +1,213 @@
+package com.common.codec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.BufferUnderflowException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Compact binary messages.
+ * Layout: [schema byte][message_id][varint field count]([varint length][name][type byte][value])*
+ * With {@link #SCHEMA_UUID_ID} the message_id is a canonical lowercase UUID stored as 16 bytes,
+ * with {@link #SCHEMA_FIELDS} there is no separate message_id and it is encoded like any other field.
+ * A value is a length-prefixed string, a zigzag varint long, an 8 byte double, or only its type byte for
+ * booleans and null, so numbers and booleans decode with the type they were encoded with.
+ * A {"message_id":"<uuid>"} message takes 18 bytes instead of 53 as JSON.
+ * The schema bytes are below any byte a JSON document starts with, see {@link MessageCodecs#detect(byte[])}.
+ */
+public class BinaryMessageCodec implements MessageCodec {
+
+    public static final String NAME = "binary";
+
+    static final byte SCHEMA_UUID_ID = 1;
+    static final byte SCHEMA_FIELDS = 2;
+
+    private static final byte TYPE_STRING = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_TRUE = 3;
+    private static final byte TYPE_FALSE = 4;
+    private static final byte TYPE_NULL = 5;
+
+    private static final int UUID_LENGTH = 36;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Map<String, ?> fields) throws IOException {
+        UUID uuid = fields.get(MESSAGE_ID_FIELD) instanceof String messageId ? canonicalUuid(messageId) : null;
+
+        // Names and values in field order, strings as their UTF-8 bytes, integers widened to Long
+        List<Object> encoded = new ArrayList<>(fields.size() * 2);
+        int size = 1 + (uuid != null ? 16 : 0);
+        for (Map.Entry<String, ?> field : fields.entrySet()) {
+            if (uuid != null && MESSAGE_ID_FIELD.equals(field.getKey())) continue;
+            byte[] name = field.getKey().getBytes(StandardCharsets.UTF_8);
+            Object value = field.getValue();
+            size += varIntSize(name.length) + name.length + 1;
+            if (value instanceof String string) {
+                byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+                value = bytes;
+                size += varIntSize(bytes.length) + bytes.length;
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                value = ((Number) value).longValue();
+                size += varLongSize(zigZag((Long) value));
+            } else if (value instanceof Double || value instanceof Float) {
+                value = ((Number) value).doubleValue();
+                size += Double.BYTES;
+            } else if (value != null && !(value instanceof Boolean)) {
+                throw new IOException("Field " + field.getKey() + " is a " + value.getClass().getSimpleName());
+            }
+            encoded.add(name);
+            encoded.add(value);
+        }
+        size += varIntSize(encoded.size() / 2);
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        if (uuid != null) {
+            buffer.put(SCHEMA_UUID_ID).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits());
+        } else {
+            buffer.put(SCHEMA_FIELDS);
+        }
+        putVarInt(buffer, encoded.size() / 2);
+        for (int i = 0; i < encoded.size(); i += 2) {
+            byte[] name = (byte[]) encoded.get(i);
+            putVarInt(buffer, name.length);
+            buffer.put(name);
+            Object value = encoded.get(i + 1);
+            if (value instanceof byte[] bytes) {
+                buffer.put(TYPE_STRING);
+                putVarInt(buffer, bytes.length);
+                buffer.put(bytes);
+            } else if (value instanceof Long number) {
+                buffer.put(TYPE_LONG);
+                putVarLong(buffer, zigZag(number));
+            } else if (value instanceof Double number) {
+                buffer.put(TYPE_DOUBLE).putDouble(number);
+            } else if (value == null) {
+                buffer.put(TYPE_NULL);
+            } else {
+                buffer.put((Boolean) value ? TYPE_TRUE : TYPE_FALSE);
+            }
+        }
+        return buffer.array();
+    }
+
+    @Override
+    public void decode(byte[] payload, BiConsumer<String, Object> fields) throws IOException {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            byte schema = buffer.get();
+            if (schema == SCHEMA_UUID_ID) {
+                fields.accept(MESSAGE_ID_FIELD, new UUID(buffer.getLong(), buffer.getLong()).toString());
+            } else if (schema != SCHEMA_FIELDS) {
+                throw new IOException("Unknown schema " + schema);
+            }
+            int count = getVarInt(buffer);
+            for (int i = 0; i < count; i++) {
+                String name = getString(buffer);
+                fields.accept(name, getValue(buffer, name));
+            }
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Truncated payload", e);
+        }
+    }
+
+    private static Object getValue(ByteBuffer buffer, String name) throws IOException {
+        byte type = buffer.get();
+        return switch (type) {
+            case TYPE_STRING -> getString(buffer);
+            case TYPE_LONG -> unZigZag(getVarLong(buffer));
+            case TYPE_DOUBLE -> buffer.getDouble();
+            case TYPE_TRUE -> Boolean.TRUE;
+            case TYPE_FALSE -> Boolean.FALSE;
+            case TYPE_NULL -> null;
+            default -> throw new IOException("Unknown type " + type + " of field " + name);
+        };
+    }
+
+    /**
+     * @return the UUID if the value is exactly its canonical lowercase form, so decoding restores the same string
+     */
+    private static UUID canonicalUuid(String value) {
+        if (value == null || value.length() != UUID_LENGTH) return null;
+        try {
+            UUID uuid = UUID.fromString(value);
+            return uuid.toString().equals(value) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getVarInt(buffer);
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    // Small negative numbers stay short as varints
+    private static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int varLongSize(long value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    private static void putVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IndexOutOfBoundsException("Malformed varint");
+    }
+
+    private static int varIntSize(int value) {
+        int size = 1;
+        while ((value >>>= 7) != 0) size++;
+        return size;
+    }
+
+    private static void putVarInt(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IndexOutOfBoundsException("Malformed varint");
+    }
+}
@@ -0,0 +1,50 @@
+package com.common.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Packs several message bodies into the value of one stream entry.
+ * Layout: [int count][int length][body]...[int length][body], big-endian.
+ * The entry carries the packed value in the {@link #FIELD_NAME} field instead of "body",
+ * so consumers tell envelopes from single messages by the field name.
+ */
+public final class Envelope {
+
+    public static final String FIELD_NAME = "envelope";
+    public static final byte[] FIELD = FIELD_NAME.getBytes(StandardCharsets.UTF_8);
+
+    private Envelope() {
+    }
+
+    /**
+     * @param to exclusive
+     */
+    public static byte[] pack(List<byte[]> bodies, int from, int to) {
+        int size = Integer.BYTES;
+        for (int i = from; i < to; i++) {
+            size += Integer.BYTES + bodies.get(i).length;
+        }
+        ByteBuffer envelope = ByteBuffer.allocate(size);
+        envelope.putInt(to - from);
+        for (int i = from; i < to; i++) {
+            byte[] body = bodies.get(i);
+            envelope.putInt(body.length).put(body);
+        }
+        return envelope.array();
+    }
+
+    public static List<byte[]> unpack(byte[] envelope) {
+        ByteBuffer buffer = ByteBuffer.wrap(envelope);
+        int count = buffer.getInt();
+        List<byte[]> bodies = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] body = new byte[buffer.getInt()];
+            buffer.get(body);
+            bodies.add(body);
+        }
+        return bodies;
+    }
+}
@@ -0,0 +1,63 @@
+package com.common.codec;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Messages as JSON objects, e.g. {"message_id":"..."}.
+ * The format the producer publishes, so JSON payloads pass the bridge without re-encoding.
+ * Decoded with the streaming parser, integers are read as Long, or BigInteger beyond its range, decimals as Double,
+ * nested values are rejected.
+ */
+public class JsonMessageCodec implements MessageCodec {
+
+    public static final String NAME = "json";
+
+    private final ObjectMapper objectMapper;
+
+    public JsonMessageCodec(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encode(Map<String, ?> fields) throws IOException {
+        return objectMapper.writeValueAsBytes(fields);
+    }
+
+    @Override
+    public void decode(byte[] payload, BiConsumer<String, Object> fields) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                fields.accept(name, value(parser, name));
+            }
+        }
+    }
+
+    private static Object value(JsonParser parser, String name) throws IOException {
+        return switch (parser.nextToken()) {
+            case VALUE_STRING -> parser.getText();
+            case VALUE_NUMBER_INT -> parser.getNumberType() == JsonParser.NumberType.BIG_INTEGER
+                    ? parser.getBigIntegerValue()
+                    : parser.getLongValue();
+            case VALUE_NUMBER_FLOAT -> parser.getDoubleValue();
+            case VALUE_TRUE -> Boolean.TRUE;
+            case VALUE_FALSE -> Boolean.FALSE;
+            case VALUE_NULL -> null;
+            default -> throw new IOException("Field " + name + " is not a scalar");
+        };
+    }
+}
@@ -0,0 +1,34 @@
+package com.common.codec;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Encodes the fields of a message into a stream payload and back.
+ * Field values keep their type: String, Long, Double, Boolean or null, like the scalars of the JSON the producer publishes.
+ * Implementations are stateless and thread-safe, see {@link MessageCodecs} for the available ones.
+ */
+public interface MessageCodec {
+
+    String MESSAGE_ID_FIELD = "message_id";
+
+    String name();
+
+    /**
+     * @throws IOException if a value is of a type the codec cannot represent
+     */
+    byte[] encode(Map<String, ?> fields) throws IOException;
+
+    /**
+     * Decodes the payload field by field into the consumer, without building a map.
+     */
+    void decode(byte[] payload, BiConsumer<String, Object> fields) throws IOException;
+
+    default Map<String, Object> decode(byte[] payload) throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        decode(payload, fields::put);
+        return fields;
+    }
+}
@@ -0,0 +1,36 @@
+package com.common.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The available {@link MessageCodec}s.
+ * Payloads identify their codec by their first byte, so a reader handles both formats
+ * whatever codec the writer was configured with.
+ */
+public final class MessageCodecs {
+
+    public static final MessageCodec JSON = new JsonMessageCodec(new ObjectMapper());
+    public static final MessageCodec BINARY = new BinaryMessageCodec();
+
+    private MessageCodecs() {
+    }
+
+    public static MessageCodec forName(String name) {
+        return switch (name) {
+            case JsonMessageCodec.NAME -> JSON;
+            case BinaryMessageCodec.NAME -> BINARY;
+            default -> throw new IllegalArgumentException("Unknown codec " + name);
+        };
+    }
+
+    /**
+     * @return the codec the payload was encoded with, JSON unless it starts with a binary schema byte
+     */
+    public static MessageCodec detect(byte[] payload) {
+        if (payload.length > 0
+                && (payload[0] == BinaryMessageCodec.SCHEMA_UUID_ID || payload[0] == BinaryMessageCodec.SCHEMA_FIELDS)) {
+            return BINARY;
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,45 @@
+package com.common.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Latency timers of the pipeline hops, shared by the bridge and the consumer.
+ * Every hop is a {@link Timer} named {@link #METRIC} with a hop tag. The percentiles are computed
+ * from an HdrHistogram over a sliding window and published as p50, p99 and p999.
+ * The stream hop starts at the entry ID, which Redis assigns from its own clock, and ends on the consumer's clock,
+ * so any skew between the two is part of it.
+ * Every entry also carries the time the bridge received its oldest message in the {@link #INGRESS_FIELD_NAME} field,
+ * in milliseconds of the bridge's clock, from which the consumer measures the end-to-end hop.
+ * It spans the bridge's and the consumer's clocks, which have to be synchronized, e.g. with NTP.
+ */
+public final class PipelineLatency {
+
+    public static final String METRIC = "pipeline.latency";
+    public static final String HOP_TAG = "hop";
+
+    // Entry field with the time the bridge received the oldest message of the entry, in epoch milliseconds
+    public static final String INGRESS_FIELD_NAME = "ingress";
+    public static final byte[] INGRESS_FIELD = INGRESS_FIELD_NAME.getBytes(StandardCharsets.UTF_8);
+
+    // From the pub/sub delivery to the bridge until the stream entry is written
+    public static final String HOP_BUFFER = "buffer";
+    // From the stream entry ID until a consumer reads the entry
+    public static final String HOP_STREAM = "stream";
+    // Processing of a stream entry by a consumer
+    public static final String HOP_PROCESS = "process";
+    // From the pub/sub delivery to the bridge until a consumer processed the entry
+    public static final String HOP_END_TO_END = "end-to-end";
+
+    private PipelineLatency() {
+    }
+
+    public static Timer timer(MeterRegistry meterRegistry, String hop) {
+        return Timer.builder(METRIC)
+                .tag(HOP_TAG, hop)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .register(meterRegistry);
+    }
+}
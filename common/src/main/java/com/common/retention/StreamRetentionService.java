@@ -0,0 +1,171 @@
+package com.common.retention;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retention for a stream, every shard of it is trimmed on its own.
+ * The bridge trims the input stream it writes to, the consumer the output stream it writes to,
+ * each application creates the service with its own stream keys and limits.
+ * The stream is trimmed approximately with XTRIM MINID ~ up to the newer of the max-len and max-age cutoffs,
+ * removing at most trim-limit entries per run.
+ * The cutoff never passes the oldest entry a consumer group still has pending or has not read yet,
+ * so only entries acknowledged by every group are trimmed.
+ * Publishes {@link #TRIMMED_METRIC} and {@link #LAGGING_GROUPS_METRIC}, tagged with the stream key.
+ */
+@Slf4j
+public class StreamRetentionService {
+
+    public static final int CHECK_RATE_MS = 1000;
+
+    // Entries trimmed since the start
+    public static final String TRIMMED_METRIC = "stream.retention.trimmed";
+    // Groups, per shard, whose pending or unread entries held the cutoff back in the last run
+    public static final String LAGGING_GROUPS_METRIC = "stream.retention.lagging.groups";
+    public static final String STREAM_TAG = "stream";
+
+    private static final RedisScript<Long> TRIM_SCRIPT = new DefaultRedisScript<>(
+            "return redis.call('XTRIM', KEYS[1], 'MINID', '~', ARGV[1], 'LIMIT', ARGV[2])", Long.class);
+
+    private static final Comparator<RecordId> ID_ORDER =
+            Comparator.comparingLong(RecordId::getTimestamp).thenComparingLong(RecordId::getSequence);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final List<String> streamKeys;
+    private final long maxLen;
+    private final long maxAgeMs;
+    private final int trimLimit;
+
+    // Oldest ID to keep in the last of the stream keys, null while nothing may be trimmed
+    private volatile RecordId cutoff;
+
+    private final AtomicLong trimmed = new AtomicLong();
+    private final AtomicInteger laggingGroups = new AtomicInteger();
+
+    /**
+     * @param streamKeys the stream, or its shards, the metrics are tagged with the first key
+     * @param maxLen     entries to keep, 0 disables the limit
+     * @param maxAgeMs   age of the entries to keep, 0 disables the limit
+     * @param trimLimit  max entries removed per trim
+     */
+    public StreamRetentionService(RedisTemplate<String, String> redisTemplate, List<String> streamKeys,
+                                  long maxLen, long maxAgeMs, int trimLimit, MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.streamKeys = List.copyOf(streamKeys);
+        this.maxLen = maxLen;
+        this.maxAgeMs = maxAgeMs;
+        this.trimLimit = trimLimit;
+        Tags tags = Tags.of(STREAM_TAG, streamKeys.get(0));
+        meterRegistry.more().counter(TRIMMED_METRIC, tags, trimmed);
+        meterRegistry.gauge(LAGGING_GROUPS_METRIC, tags, laggingGroups);
+    }
+
+    public boolean isEnabled() {
+        return maxLen > 0 || maxAgeMs > 0;
+    }
+
+    /**
+     * Trims the stream, or each of its shards, down to the current cutoff.
+     * Runs every {@link #CHECK_RATE_MS}.
+     */
+    @Scheduled(fixedRate = CHECK_RATE_MS)
+    public void trim() {
+        if (!isEnabled()) return;
+        int lagging = 0;
+        for (String streamKey : streamKeys) {
+            AtomicInteger streamLagging = new AtomicInteger();
+            cutoff = trim(streamKey, streamLagging);
+            lagging += streamLagging.get();
+        }
+        laggingGroups.set(lagging);
+    }
+
+    /**
+     * @return the cutoff of the stream, null while nothing may be trimmed
+     */
+    private RecordId trim(String streamKey, AtomicInteger lagging) {
+        try {
+            RecordId streamCutoff = findCutoff(streamKey, lagging);
+            if (streamCutoff == null) return null;
+
+            Long removed = redisTemplate.execute(TRIM_SCRIPT, List.of(streamKey), streamCutoff.getValue(), String.valueOf(trimLimit));
+            if (removed != null && removed > 0) {
+                trimmed.addAndGet(removed);
+                log.info("Trimmed {} entries before {} from '{}' (total trimmed: {})", removed, streamCutoff, streamKey, trimmed.get());
+            }
+            return streamCutoff;
+        } catch (Exception e) {
+            log.warn("Failed to trim stream '{}': {}", streamKey, e.getMessage());
+            return cutoff;
+        }
+    }
+
+    private RecordId findCutoff(String streamKey, AtomicInteger lagging) {
+        RecordId retentionCutoff = maxAgeMs > 0 ? RecordId.of(System.currentTimeMillis() - maxAgeMs, 0) : null;
+
+        Long length = redisTemplate.opsForStream().size(streamKey);
+        long excess = length == null ? 0 : length - maxLen;
+        if (maxLen > 0 && excess > 0) {
+            List<MapRecord<String, Object, Object>> oldest = redisTemplate.opsForStream()
+                    .range(streamKey, Range.unbounded(), Limit.limit().count((int) Math.min(excess, trimLimit)));
+            if (oldest != null && !oldest.isEmpty()) {
+                RecordId last = oldest.get(oldest.size() - 1).getId();
+                retentionCutoff = newest(retentionCutoff, RecordId.of(last.getTimestamp(), last.getSequence() + 1));
+            }
+        }
+        if (retentionCutoff == null) return null;
+
+        // Never trim past what a group still has to process or acknowledge
+        RecordId cutoff = retentionCutoff;
+        for (StreamInfo.XInfoGroup group : redisTemplate.opsForStream().groups(streamKey)) {
+            RecordId groupFloor;
+            if (group.pendingCount() > 0) {
+                groupFloor = redisTemplate.opsForStream().pending(streamKey, group.groupName()).minRecordId();
+            } else {
+                RecordId lastDelivered = RecordId.of(group.lastDeliveredId());
+                groupFloor = RecordId.of(lastDelivered.getTimestamp(), lastDelivered.getSequence() + 1);
+            }
+            if (ID_ORDER.compare(groupFloor, retentionCutoff) < 0) {
+                lagging.incrementAndGet();
+            }
+            if (ID_ORDER.compare(groupFloor, cutoff) < 0) {
+                cutoff = groupFloor;
+            }
+        }
+        return cutoff;
+    }
+
+    private static RecordId newest(RecordId a, RecordId b) {
+        return a == null || ID_ORDER.compare(b, a) > 0 ? b : a;
+    }
+
+    /**
+     * @return the oldest ID to keep, null while nothing may be trimmed
+     */
+    public RecordId getCutoff() {
+        return cutoff;
+    }
+
+    public long getTrimmedCount() {
+        return trimmed.get();
+    }
+
+    public int getLaggingGroupCount() {
+        return laggingGroups.get();
+    }
+}
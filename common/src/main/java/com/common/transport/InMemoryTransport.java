@@ -0,0 +1,312 @@
+package com.common.transport;
+
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * {@link MessageTransport} inside the JVM, to run the bridge and the consumer in one process without Redis,
+ * so benchmarks and tests measure the Java side only.
+ * Streams behave like Redis streams as far as the pipeline uses them: IDs are millisecond-sequence pairs,
+ * a consumer group delivers every entry once and keeps it in its pending entries list until it is acknowledged,
+ * and group reads block until entries arrive. Each stream is guarded by its own monitor,
+ * reads of several streams wait for any append on a monitor of the transport.
+ * Streams keep at least maxLen entries, like XADD MAXLEN ~, the oldest are dropped in chunks.
+ * As in Redis the cap does not wait for the consumer groups: an entry a group has not read yet is lost,
+ * one that is pending stays in the pending entries list without its data. Both are counted by {@link #dropped(String)}.
+ * Pub/sub messages are delivered to the subscribers on the publishing thread.
+ */
+public class InMemoryTransport implements MessageTransport {
+
+    private final int maxLen;
+
+    private final Map<String, List<Consumer<byte[]>>> channels = new ConcurrentHashMap<>();
+    private final Map<String, MemoryStream> streams = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> registries = new ConcurrentHashMap<>();
+
+    // Counts the appends to any stream, multi-stream reads wait on it for the next one
+    private final Object appendSignal = new Object();
+    private long appends;
+
+    public InMemoryTransport() {
+        this(Integer.MAX_VALUE);
+    }
+
+    public InMemoryTransport(int maxLen) {
+        this.maxLen = maxLen;
+    }
+
+    @Override
+    public void publish(String channel, List<byte[]> messages) {
+        List<Consumer<byte[]>> subscribers = channels.get(channel);
+        if (subscribers == null) return;
+        for (byte[] message : messages) {
+            subscribers.forEach(subscriber -> subscriber.accept(message));
+        }
+    }
+
+    @Override
+    public Subscription subscribe(String channel, Consumer<byte[]> listener) {
+        List<Consumer<byte[]>> subscribers = channels.computeIfAbsent(channel, key -> new CopyOnWriteArrayList<>());
+        subscribers.add(listener);
+        return () -> subscribers.remove(listener);
+    }
+
+    /**
+     * Appends runs of entries for the same stream under one lock.
+     */
+    @Override
+    public void append(List<? extends MapRecord<byte[], byte[], byte[]>> entries) {
+        int from = 0;
+        while (from < entries.size()) {
+            byte[] key = entries.get(from).getStream();
+            int to = from + 1;
+            while (to < entries.size() && Arrays.equals(key, entries.get(to).getStream())) {
+                to++;
+            }
+            stream(new String(key, StandardCharsets.UTF_8)).append(entries.subList(from, to));
+            from = to;
+        }
+        synchronized (appendSignal) {
+            appends++;
+            appendSignal.notifyAll();
+        }
+    }
+
+    @Override
+    public void createGroup(String stream, String group) {
+        stream(stream).createGroup(group);
+    }
+
+    @Override
+    public List<ByteRecord> readGroup(String stream, String group, String consumer, int count, Duration block) {
+        try {
+            return existing(stream).readGroup(group, consumer, count, block);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    @Override
+    public List<ByteRecord> readGroup(List<String> streams, String group, String consumer, int count, Duration block) {
+        if (streams.size() == 1) return readGroup(streams.get(0), group, consumer, count, block);
+        long deadline = System.nanoTime() + block.toNanos();
+        try {
+            while (true) {
+                long seen;
+                synchronized (appendSignal) {
+                    seen = appends;
+                }
+                List<ByteRecord> read = new ArrayList<>();
+                for (String stream : streams) {
+                    read.addAll(existing(stream).readGroup(group, consumer, count, Duration.ZERO));
+                }
+                if (!read.isEmpty()) return read;
+
+                synchronized (appendSignal) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) return read;
+                    if (appends == seen) {
+                        TimeUnit.NANOSECONDS.timedWait(appendSignal, remaining);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return List.of();
+        }
+    }
+
+    @Override
+    public void acknowledge(String stream, String group, List<RecordId> ids) {
+        existing(stream).acknowledge(group, ids);
+    }
+
+    @Override
+    public long pending(String stream, String group) {
+        return existing(stream).pending(group);
+    }
+
+    @Override
+    public void deleteConsumer(String stream, String group, String consumer) {
+        existing(stream).deleteConsumer(group, consumer);
+    }
+
+    @Override
+    public void registerConsumer(String registry, String consumer) {
+        registries.computeIfAbsent(registry, key -> ConcurrentHashMap.newKeySet()).add(consumer);
+    }
+
+    @Override
+    public void unregisterConsumer(String registry, String consumer) {
+        Set<String> consumers = registries.get(registry);
+        if (consumers != null) {
+            consumers.remove(consumer);
+        }
+    }
+
+    public Set<String> registeredConsumers(String registry) {
+        return Set.copyOf(registries.getOrDefault(registry, Set.of()));
+    }
+
+    /**
+     * @return number of entries ever appended to the stream, including the ones dropped by the cap
+     */
+    public long appended(String stream) {
+        MemoryStream memoryStream = streams.get(stream);
+        return memoryStream == null ? 0 : memoryStream.appended();
+    }
+
+    /**
+     * @return number of entries the cap dropped before every consumer group had acknowledged them
+     */
+    public long dropped(String stream) {
+        MemoryStream memoryStream = streams.get(stream);
+        return memoryStream == null ? 0 : memoryStream.dropped();
+    }
+
+    private MemoryStream stream(String stream) {
+        return streams.computeIfAbsent(stream, key -> new MemoryStream(key.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private MemoryStream existing(String stream) {
+        MemoryStream memoryStream = streams.get(stream);
+        if (memoryStream == null) {
+            throw new IllegalStateException("NOGROUP no such key '" + stream + "'");
+        }
+        return memoryStream;
+    }
+
+    private final class MemoryStream {
+
+        private final byte[] key;
+        private final List<ByteRecord> entries = new ArrayList<>();
+        // Position of entries.get(0) among all entries ever appended
+        private long offset;
+        private long lastMs;
+        private long lastSequence;
+        // Entries the cap dropped while a group had not acknowledged them
+        private long dropped;
+        private final Map<String, Group> groups = new HashMap<>();
+
+        private MemoryStream(byte[] key) {
+            this.key = key;
+        }
+
+        synchronized void append(List<? extends MapRecord<byte[], byte[], byte[]>> records) {
+            for (MapRecord<byte[], byte[], byte[]> record : records) {
+                entries.add(StreamRecords.rawBytes(record.getValue()).withId(nextId()).withStreamKey(key));
+            }
+            long excess = (long) entries.size() - maxLen;
+            if (excess > Math.max(1, maxLen / 10)) {
+                List<ByteRecord> trimmed = entries.subList(0, (int) excess);
+                for (int i = 0; i < trimmed.size(); i++) {
+                    if (unacknowledged(offset + i, trimmed.get(i).getId())) {
+                        dropped++;
+                    }
+                }
+                trimmed.clear();
+                offset += excess;
+            }
+            notifyAll();
+        }
+
+        synchronized void createGroup(String group) {
+            groups.putIfAbsent(group, new Group(offset));
+        }
+
+        synchronized List<ByteRecord> readGroup(String groupName, String consumer, int count, Duration block)
+                throws InterruptedException {
+            Group group = group(groupName);
+            long deadline = System.nanoTime() + block.toNanos();
+            while (appended() <= Math.max(group.next, offset)) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return List.of();
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+            // Entries dropped by the cap before they were delivered are skipped
+            int from = (int) (Math.max(group.next, offset) - offset);
+            int to = Math.min(entries.size(), from + count);
+            List<ByteRecord> read = new ArrayList<>(entries.subList(from, to));
+            read.forEach(record -> group.pending.put(record.getId(), consumer));
+            group.next = offset + to;
+            return read;
+        }
+
+        synchronized void acknowledge(String groupName, List<RecordId> ids) {
+            Group group = group(groupName);
+            ids.forEach(group.pending::remove);
+        }
+
+        synchronized long pending(String groupName) {
+            return group(groupName).pending.size();
+        }
+
+        synchronized void deleteConsumer(String groupName, String consumer) {
+            group(groupName).pending.values().removeIf(consumer::equals);
+        }
+
+        synchronized long appended() {
+            return offset + entries.size();
+        }
+
+        synchronized long dropped() {
+            return dropped;
+        }
+
+        // Not delivered to a group yet, or delivered and still pending
+        private boolean unacknowledged(long position, RecordId id) {
+            for (Group group : groups.values()) {
+                if (position >= group.next || group.pending.containsKey(id)) return true;
+            }
+            return false;
+        }
+
+        private RecordId nextId() {
+            long now = System.currentTimeMillis();
+            if (now > lastMs) {
+                lastMs = now;
+                lastSequence = 0;
+            } else {
+                lastSequence++;
+            }
+            return RecordId.of(lastMs, lastSequence);
+        }
+
+        private Group group(String groupName) {
+            Group group = groups.get(groupName);
+            if (group == null) {
+                throw new IllegalStateException("NOGROUP no such consumer group '" + groupName + "'");
+            }
+            return group;
+        }
+    }
+
+    private static final class Group {
+
+        // Position of the next entry to deliver
+        private long next;
+        // Pending entries list, ID to the consumer it was delivered to
+        private final Map<RecordId, String> pending = new LinkedHashMap<>();
+
+        private Group(long next) {
+            this.next = next;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.common.transport;
+
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * The operations the bridge and the consumer need from their broker: pub/sub, stream appends,
+ * consumer group reads with their pending entries lists and acknowledgements, and the registry of active consumers.
+ * {@link RedisTransport} runs them against Redis, {@link InMemoryTransport} inside the JVM,
+ * so the whole pipeline can run in one process without Redis for benchmarks and tests.
+ * Stream entries use the Spring Data Redis record types with raw byte fields, as they go over the wire.
+ */
+public interface MessageTransport {
+
+    /**
+     * Publishes the messages to the channel in order.
+     */
+    void publish(String channel, List<byte[]> messages);
+
+    /**
+     * Delivers every message published to the channel from now on to the listener.
+     * @return the subscription, closing it stops the delivery
+     */
+    Subscription subscribe(String channel, Consumer<byte[]> listener);
+
+    /**
+     * Appends the entries to their streams with generated IDs, in one round trip.
+     */
+    void append(List<? extends MapRecord<byte[], byte[], byte[]>> entries);
+
+    /**
+     * Creates the consumer group reading the stream from the start, and the stream if it does not exist.
+     * Does nothing if the group exists already.
+     */
+    void createGroup(String stream, String group);
+
+    /**
+     * Reads up to count entries never delivered to the group and adds them to its pending entries list
+     * under the consumer, waiting up to block for the first one.
+     * @return the entries in stream order, empty if none arrived in time
+     */
+    default List<ByteRecord> readGroup(String stream, String group, String consumer, int count, Duration block) {
+        return readGroup(List.of(stream), group, consumer, count, block);
+    }
+
+    /**
+     * Reads up to count entries from each of the streams in one call, like XREADGROUP with several keys.
+     * The group has to exist on every stream. Waits up to block for the first entry on any of them.
+     * @return the entries of every stream in stream order, each carrying its stream key
+     */
+    List<ByteRecord> readGroup(List<String> streams, String group, String consumer, int count, Duration block);
+
+    /**
+     * Removes the entries from the pending entries list of the group.
+     */
+    void acknowledge(String stream, String group, List<RecordId> ids);
+
+    /**
+     * Appends the entries and acknowledges the ids of every stream, in one round trip where the transport supports it.
+     */
+    default void appendAndAcknowledge(List<? extends MapRecord<byte[], byte[], byte[]>> entries,
+                                      String group, Map<String, List<RecordId>> ids) {
+        append(entries);
+        ids.forEach((stream, streamIds) -> acknowledge(stream, group, streamIds));
+    }
+
+    /**
+     * @return number of entries delivered to the group and not acknowledged yet
+     */
+    long pending(String stream, String group);
+
+    /**
+     * Removes the consumer from the group, entries still pending under it are dropped.
+     */
+    void deleteConsumer(String stream, String group, String consumer);
+
+    /**
+     * Adds the consumer to the registry of active consumers kept under the given key.
+     */
+    void registerConsumer(String registry, String consumer);
+
+    void unregisterConsumer(String registry, String consumer);
+
+    interface Subscription extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,230 @@
+package com.common.transport;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+/**
+ * {@link MessageTransport} on Redis: PUBLISH and SUBSCRIBE, XADD, XREADGROUP, XACK and a list as the consumer registry.
+ * A group read of several streams is a single XREADGROUP, or one per slot on a cluster,
+ * see {@link #readGroup(List, String, String, int, Duration)}.
+ * Batches of commands are pipelined. Subscriptions are served by the given listener container,
+ * without one only the stream operations are available.
+ */
+public class RedisTransport implements MessageTransport {
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+
+    // Blocking reads of the slots of a cluster, a thread per slot while a read waits
+    private final ExecutorService slotReadExecutor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stream-slot-read");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Whether the connections go to a cluster, checked on the first group read
+    private volatile Boolean cluster;
+
+    public RedisTransport(RedisTemplate<String, String> redisTemplate) {
+        this(redisTemplate, null);
+    }
+
+    public RedisTransport(RedisTemplate<String, String> redisTemplate, RedisMessageListenerContainer listenerContainer) {
+        this.redisTemplate = redisTemplate;
+        this.listenerContainer = listenerContainer;
+    }
+
+    @Override
+    public void publish(String channel, List<byte[]> messages) {
+        byte[] channelBytes = bytes(channel);
+        redisTemplate.executePipelined((RedisCallback<?>) connection -> {
+            messages.forEach(message -> connection.publish(channelBytes, message));
+            return null;
+        });
+    }
+
+    @Override
+    public Subscription subscribe(String channel, java.util.function.Consumer<byte[]> listener) {
+        if (listenerContainer == null) {
+            throw new IllegalStateException("No listener container to subscribe to " + channel);
+        }
+        MessageListener messageListener = (message, pattern) -> listener.accept(message.getBody());
+        listenerContainer.addMessageListener(messageListener, new ChannelTopic(channel));
+        if (!listenerContainer.isRunning()) {
+            listenerContainer.start();
+        }
+        return () -> listenerContainer.removeMessageListener(messageListener);
+    }
+
+    /**
+     * A single entry is sent on the shared connection, a pipeline takes a dedicated one.
+     */
+    @Override
+    public void append(List<? extends MapRecord<byte[], byte[], byte[]>> entries) {
+        if (entries.isEmpty()) return;
+        if (entries.size() == 1) {
+            redisTemplate.execute((RedisCallback<RecordId>) connection -> connection.streamCommands().xAdd(entries.get(0)));
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<?>) connection -> {
+            entries.forEach(entry -> connection.streamCommands().xAdd(entry));
+            return null;
+        });
+    }
+
+    @Override
+    public void createGroup(String stream, String group) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    connection.streamCommands().xGroupCreate(bytes(stream), group, ReadOffset.from("0"), true));
+        } catch (RedisSystemException e) {
+            if (e.getCause() == null || e.getCause().getMessage() == null
+                    || !e.getCause().getMessage().contains("BUSYGROUP")) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A cluster rejects XREADGROUP over keys in different slots, there the streams are read per slot.
+     * If none of them has entries, every slot is read again with a blocking XREADGROUP on its own thread and connection,
+     * and the call returns once all of them did, so no entry delivered to the consumer is left behind.
+     * The first entries after an idle period may then wait up to block, on a cluster prefer subscriptions that each
+     * read shards of a single slot.
+     */
+    @Override
+    public List<ByteRecord> readGroup(List<String> streams, String group, String consumer, int count, Duration block) {
+        Consumer groupConsumer = Consumer.from(group, consumer);
+        Collection<List<String>> slots = isCluster()
+                ? streams.stream().collect(Collectors.groupingBy(stream -> SlotHash.getSlot(bytes(stream)))).values()
+                : List.of(streams);
+        if (slots.size() == 1) {
+            return read(groupConsumer, streams, count, block);
+        }
+        List<ByteRecord> records = new ArrayList<>();
+        slots.forEach(slotStreams -> records.addAll(read(groupConsumer, slotStreams, count, Duration.ZERO)));
+        if (!records.isEmpty() || block.isZero() || block.isNegative()) return records;
+
+        List<Future<List<ByteRecord>>> reads = new ArrayList<>(slots.size());
+        slots.forEach(slotStreams -> reads.add(slotReadExecutor.submit(() -> read(groupConsumer, slotStreams, count, block))));
+        try {
+            for (Future<List<ByteRecord>> slotRead : reads) {
+                records.addAll(slotRead.get());
+            }
+        } catch (InterruptedException e) {
+            // Entries the remaining reads deliver stay pending until they are reclaimed
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) throw cause;
+            throw new IllegalStateException(e.getCause());
+        }
+        return records;
+    }
+
+    private List<ByteRecord> read(Consumer consumer, List<String> streams, int count, Duration block) {
+        List<ByteRecord> read = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                xReadGroup(connection, consumer, streams, count, block));
+        return read == null ? List.of() : read;
+    }
+
+    private boolean isCluster() {
+        Boolean isCluster = cluster;
+        if (isCluster == null) {
+            isCluster = Boolean.TRUE.equals(redisTemplate.execute((RedisCallback<Boolean>) connection ->
+                    connection instanceof RedisClusterConnection));
+            cluster = isCluster;
+        }
+        return isCluster;
+    }
+
+    /**
+     * XREADGROUP of the streams from the last delivered entry, blocking only for a positive block.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<ByteRecord> xReadGroup(RedisConnection connection, Consumer consumer, List<String> streams,
+                                               int count, Duration block) {
+        var readOptions = block.isZero() || block.isNegative()
+                ? StreamReadOptions.empty().count(count)
+                : StreamReadOptions.empty().count(count).block(block);
+        StreamOffset<byte[]>[] offsets = streams.stream()
+                .map(stream -> StreamOffset.create(bytes(stream), ReadOffset.lastConsumed()))
+                .toArray(StreamOffset[]::new);
+        List<ByteRecord> read = connection.streamCommands().xReadGroup(consumer, readOptions, offsets);
+        return read == null ? List.of() : read;
+    }
+
+    @Override
+    public void acknowledge(String stream, String group, List<RecordId> ids) {
+        if (ids.isEmpty()) return;
+        redisTemplate.opsForStream().acknowledge(stream, group, ids.toArray(RecordId[]::new));
+    }
+
+    /**
+     * Sends the XADDs and an XACK per stream in one pipeline.
+     */
+    @Override
+    public void appendAndAcknowledge(List<? extends MapRecord<byte[], byte[], byte[]>> entries,
+                                     String group, Map<String, List<RecordId>> ids) {
+        redisTemplate.executePipelined((RedisCallback<?>) connection -> {
+            entries.forEach(entry -> connection.streamCommands().xAdd(entry));
+            ids.forEach((stream, streamIds) -> {
+                if (!streamIds.isEmpty()) {
+                    connection.streamCommands().xAck(bytes(stream), group, streamIds.toArray(RecordId[]::new));
+                }
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public long pending(String stream, String group) {
+        PendingMessagesSummary summary = redisTemplate.opsForStream().pending(stream, group);
+        return summary == null ? 0 : summary.getTotalPendingMessages();
+    }
+
+    @Override
+    public void deleteConsumer(String stream, String group, String consumer) {
+        redisTemplate.opsForStream().deleteConsumer(stream, Consumer.from(group, consumer));
+    }
+
+    @Override
+    public void registerConsumer(String registry, String consumer) {
+        redisTemplate.opsForList().rightPush(registry, consumer);
+    }
+
+    @Override
+    public void unregisterConsumer(String registry, String consumer) {
+        redisTemplate.opsForList().remove(registry, 1, consumer);
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,63 @@
+package com.common.transport;
+
+import io.lettuce.core.cluster.SlotHash;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keys of a stream split into shards, so the writes and group reads spread over the nodes of a Redis Cluster.
+ * Shard i of stream s is {@code s:i:{tag}}. The hash tag is the smallest number whose slot lies in the i-th
+ * of N equal slot ranges, so with masters owning contiguous slot ranges the shards land on different nodes.
+ * A message goes to the shard of its message_id hash, see {@link #shardOf(int, int)}.
+ * With one shard the stream keeps its plain key.
+ */
+public final class StreamShards {
+
+    private StreamShards() {
+    }
+
+    /**
+     * @return the keys of the shards in shard order, the stream key itself for a single shard
+     */
+    public static List<String> keys(String streamKey, int shards) {
+        if (shards <= 1) return List.of(streamKey);
+        if (shards > SlotHash.SLOT_COUNT) {
+            throw new IllegalArgumentException("At most " + SlotHash.SLOT_COUNT + " shards, got " + shards);
+        }
+        List<String> keys = new ArrayList<>(shards);
+        for (int shard = 0; shard < shards; shard++) {
+            keys.add(streamKey + ":" + shard + ":{" + tag(shard, shards) + "}");
+        }
+        return keys;
+    }
+
+    /**
+     * @return the shard of a message, from the hash of its message_id
+     */
+    public static int shardOf(int hash, int shards) {
+        return Math.floorMod(hash, shards);
+    }
+
+    /**
+     * @return the part of the key Redis Cluster hashes, the hash tag if it has one, the whole key otherwise,
+     * a key tagged with it shares the slot of the given key
+     */
+    public static String hashTag(String key) {
+        int open = key.indexOf('{');
+        if (open >= 0) {
+            int close = key.indexOf('}', open + 1);
+            if (close > open + 1) return key.substring(open + 1, close);
+        }
+        return key;
+    }
+
+    static int tag(int shard, int shards) {
+        int from = (int) ((long) shard * SlotHash.SLOT_COUNT / shards);
+        int to = (int) ((long) (shard + 1) * SlotHash.SLOT_COUNT / shards);
+        for (int tag = 0; ; tag++) {
+            int slot = SlotHash.getSlot(String.valueOf(tag));
+            if (slot >= from && slot < to) return tag;
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.common.codec;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Compares the payload size and the CPU time per message of the {@link MessageCodecs}.
+ * Encodes and decodes {"message_id":"<uuid>"} messages as the bridge and the consumer do,
+ * after a warm-up, and prints bytes per entry and nanoseconds per message for each codec.
+ * java -cp common/target/test-classes:common/target/classes:<jackson jars> com.common.codec.MessageCodecBenchmark 2000000
+ */
+public class MessageCodecBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int messages = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        Map<String, String>[] samples = samples(10_000);
+
+        for (MessageCodec codec : new MessageCodec[]{MessageCodecs.JSON, MessageCodecs.BINARY}) {
+            run(codec, samples, messages / 4);
+            long bytes = 0;
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            long blackhole = 0;
+            for (int i = 0; i < messages; i++) {
+                Map<String, String> message = samples[i % samples.length];
+                long start = System.nanoTime();
+                byte[] payload = codec.encode(message);
+                long encoded = System.nanoTime();
+                blackhole += codec.decode(payload).size();
+                decodeNanos += System.nanoTime() - encoded;
+                encodeNanos += encoded - start;
+                bytes += payload.length;
+            }
+            System.out.printf("%-6s bytes/entry: %5.1f  encode ns/msg: %6.1f  decode ns/msg: %6.1f  (%d)%n",
+                    codec.name(), (double) bytes / messages,
+                    (double) encodeNanos / messages, (double) decodeNanos / messages, blackhole % 10);
+        }
+    }
+
+    private static void run(MessageCodec codec, Map<String, String>[] samples, int messages) throws IOException {
+        for (int i = 0; i < messages; i++) {
+            codec.decode(codec.encode(samples[i % samples.length]));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, String>[] samples(int count) {
+        Map<String, String>[] samples = new Map[count];
+        for (int i = 0; i < count; i++) {
+            samples[i] = Map.of("message_id", UUID.randomUUID().toString());
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,77 @@
+package com.common.codec;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MessageCodecTest {
+
+    @Test
+    void testBinaryRoundTrip_uuidAndOtherIds() throws IOException {
+        Map<String, String> uuidMessage = Map.of("message_id", UUID.randomUUID().toString());
+        Map<String, String> fields = new LinkedHashMap<>();
+        // Upper case is not the canonical form, it must come back unchanged
+        fields.put("message_id", UUID.randomUUID().toString().toUpperCase());
+        fields.put("consumerId", "consumer-ü");
+
+        byte[] encoded = MessageCodecs.BINARY.encode(uuidMessage);
+
+        assertEquals(18, encoded.length);
+        assertEquals(uuidMessage, MessageCodecs.BINARY.decode(encoded));
+        assertEquals(fields, MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(fields)));
+        assertEquals(Map.of("a", ""), MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(Map.of("a", ""))));
+    }
+
+    @Test
+    void testCodecIsDetectedFromPayload() throws IOException {
+        Map<String, String> message = Map.of("message_id", UUID.randomUUID().toString());
+
+        assertSame(MessageCodecs.BINARY, MessageCodecs.detect(MessageCodecs.BINARY.encode(message)));
+        assertSame(MessageCodecs.BINARY, MessageCodecs.detect(MessageCodecs.BINARY.encode(Map.of("id", "1"))));
+        assertSame(MessageCodecs.JSON, MessageCodecs.detect(MessageCodecs.JSON.encode(message)));
+        assertSame(MessageCodecs.JSON, MessageCodecs.detect(" {}".getBytes()));
+    }
+
+    @Test
+    void testJsonIsStreamedAsTypedScalarFields() throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+
+        MessageCodecs.JSON.decode("{\"message_id\":\"a\",\"count\":3,\"ok\":true}".getBytes(), fields::put);
+
+        assertEquals(Map.of("message_id", "a", "count", 3L, "ok", true), fields);
+        assertThrows(IOException.class, () -> MessageCodecs.JSON.decode("true".getBytes()));
+        assertThrows(IOException.class, () -> MessageCodecs.JSON.decode("{\"nested\":{}}".getBytes()));
+    }
+
+    @Test
+    void testBinaryRoundTrip_keepsTheTypesOfNonStringValues() throws IOException {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        fields.put("message_id", UUID.randomUUID().toString());
+        fields.put("count", 3L);
+        fields.put("offset", -70_000L);
+        fields.put("max", Long.MIN_VALUE);
+        fields.put("ratio", 0.25);
+        fields.put("ok", true);
+        fields.put("retried", false);
+        fields.put("parent", null);
+        fields.put("text", "3");
+        String json = "{\"message_id\":\"" + fields.get("message_id") + "\",\"count\":3,\"offset\":-70000,"
+                + "\"max\":" + Long.MIN_VALUE + ",\"ratio\":0.25,\"ok\":true,\"retried\":false,\"parent\":null,\"text\":\"3\"}";
+
+        assertEquals(fields, MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(fields)));
+        // The way the bridge re-encodes the JSON the producer published
+        assertEquals(fields, MessageCodecs.BINARY.decode(MessageCodecs.BINARY.encode(MessageCodecs.JSON.decode(json.getBytes()))));
+        assertEquals(fields, MessageCodecs.JSON.decode(MessageCodecs.JSON.encode(MessageCodecs.BINARY.decode(
+                MessageCodecs.BINARY.encode(fields)))));
+        // Beyond a long, left to the JSON the body arrived in
+        assertThrows(IOException.class, () -> MessageCodecs.BINARY.encode(
+                MessageCodecs.JSON.decode("{\"big\":123456789012345678901234567890}".getBytes())));
+    }
+}
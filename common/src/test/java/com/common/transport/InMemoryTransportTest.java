@@ -0,0 +1,148 @@
+package com.common.transport;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InMemoryTransportTest {
+
+    private static final String STREAM = "messages:published";
+    private static final String GROUP = "group";
+    private static final byte[] FIELD = "body".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void testGroupDeliversOnceAndTracksPendingEntries() {
+        var transport = new InMemoryTransport();
+        transport.createGroup(STREAM, GROUP);
+        transport.append(entries(0, 5));
+
+        List<ByteRecord> first = transport.readGroup(STREAM, GROUP, "a", 3, Duration.ZERO);
+        List<ByteRecord> second = transport.readGroup(STREAM, GROUP, "b", 3, Duration.ZERO);
+
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+        assertArrayEquals(bytes(3), second.get(0).getValue().get(FIELD));
+        assertTrue(transport.readGroup(STREAM, GROUP, "a", 3, Duration.ofMillis(10)).isEmpty());
+        assertEquals(5, transport.pending(STREAM, GROUP));
+
+        transport.acknowledge(STREAM, GROUP, first.stream().map(ByteRecord::getId).toList());
+        assertEquals(2, transport.pending(STREAM, GROUP));
+        transport.deleteConsumer(STREAM, GROUP, "b");
+        assertEquals(0, transport.pending(STREAM, GROUP));
+
+        // A second group reads the stream from the start
+        transport.createGroup(STREAM, "other");
+        assertEquals(5, transport.readGroup(STREAM, "other", "a", 10, Duration.ZERO).size());
+    }
+
+    @Test
+    void testBlockingReadWakesUpOnAppend() throws Exception {
+        var transport = new InMemoryTransport();
+        transport.createGroup(STREAM, GROUP);
+
+        CompletableFuture<List<ByteRecord>> read = CompletableFuture.supplyAsync(() ->
+                transport.readGroup(STREAM, GROUP, "a", 10, Duration.ofSeconds(10)));
+        Thread.sleep(50);
+        transport.append(entries(0, 1));
+
+        List<ByteRecord> records = read.get();
+        assertEquals(1, records.size());
+        RecordId id = records.get(0).getId();
+        assertTrue(id.getTimestamp() > 0);
+    }
+
+    @Test
+    void testGroupReadOfSeveralStreamsWakesUpOnAnyAppend() throws Exception {
+        var transport = new InMemoryTransport();
+        List<String> shards = StreamShards.keys(STREAM, 3);
+        shards.forEach(shard -> transport.createGroup(shard, GROUP));
+
+        CompletableFuture<List<ByteRecord>> read = CompletableFuture.supplyAsync(() ->
+                transport.readGroup(shards, GROUP, "a", 10, Duration.ofSeconds(10)));
+        Thread.sleep(50);
+        transport.append(List.of(MapRecord.create(shards.get(2).getBytes(StandardCharsets.UTF_8), Map.of(FIELD, bytes(7)))));
+
+        List<ByteRecord> records = read.get();
+        assertEquals(1, records.size());
+        assertArrayEquals(shards.get(2).getBytes(StandardCharsets.UTF_8), records.get(0).getStream());
+
+        transport.append(entries(0, 2));
+        transport.createGroup(STREAM, GROUP);
+        transport.append(List.of(MapRecord.create(shards.get(0).getBytes(StandardCharsets.UTF_8), Map.of(FIELD, bytes(8)))));
+        // Up to count entries per stream
+        assertEquals(2, transport.readGroup(List.of(shards.get(0), STREAM), GROUP, "a", 1, Duration.ZERO).size());
+        assertEquals(2, transport.pending(shards.get(2), GROUP) + transport.pending(shards.get(0), GROUP));
+    }
+
+    @Test
+    void testCapDropsTheOldestEntries() {
+        var transport = new InMemoryTransport(100);
+        transport.createGroup(STREAM, GROUP);
+        for (int i = 0; i < 10; i++) {
+            transport.append(entries(i * 100, 100));
+        }
+
+        List<ByteRecord> read = transport.readGroup(STREAM, GROUP, "a", 1000, Duration.ZERO);
+
+        assertEquals(1000, transport.appended(STREAM));
+        assertTrue(read.size() >= 100 && read.size() <= 110, "read " + read.size());
+        assertArrayEquals(bytes(999), read.get(read.size() - 1).getValue().get(FIELD));
+        // Dropped before the group read them
+        assertEquals(1000 - read.size(), transport.dropped(STREAM));
+    }
+
+    @Test
+    void testCapKeepsThePendingEntriesListAndCountsTheDrops() {
+        var transport = new InMemoryTransport(10);
+        transport.createGroup(STREAM, GROUP);
+        transport.append(entries(0, 10));
+        List<ByteRecord> read = transport.readGroup(STREAM, GROUP, "a", 10, Duration.ZERO);
+        transport.acknowledge(STREAM, GROUP, read.subList(0, 4).stream().map(ByteRecord::getId).toList());
+
+        transport.append(entries(10, 10));
+
+        // The 6 unacknowledged entries of the first 10 are gone, their IDs are still pending
+        assertEquals(6, transport.dropped(STREAM));
+        assertEquals(6, transport.pending(STREAM, GROUP));
+        assertEquals(10, transport.readGroup(STREAM, GROUP, "a", 100, Duration.ZERO).size());
+    }
+
+    @Test
+    void testPublishReachesTheSubscribersUntilClosed() {
+        var transport = new InMemoryTransport();
+        List<byte[]> received = new ArrayList<>();
+        var subscription = transport.subscribe("channel", received::add);
+
+        transport.publish("channel", List.of(bytes(1), bytes(2)));
+        transport.publish("other", List.of(bytes(3)));
+        subscription.close();
+        transport.publish("channel", List.of(bytes(4)));
+
+        assertEquals(2, received.size());
+        assertArrayEquals(bytes(2), received.get(1));
+    }
+
+    private static List<MapRecord<byte[], byte[], byte[]>> entries(int from, int count) {
+        List<MapRecord<byte[], byte[], byte[]>> entries = new ArrayList<>(count);
+        for (int i = from; i < from + count; i++) {
+            entries.add(MapRecord.create(STREAM.getBytes(StandardCharsets.UTF_8), Map.of(FIELD, bytes(i))));
+        }
+        return entries;
+    }
+
+    private static byte[] bytes(int value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,43 @@
+package com.common.transport;
+
+import io.lettuce.core.cluster.SlotHash;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreamShardsTest {
+
+    private static final String STREAM = "messages:published";
+
+    @Test
+    void testSingleShardKeepsTheStreamKey() {
+        assertEquals(List.of(STREAM), StreamShards.keys(STREAM, 1));
+    }
+
+    @Test
+    void testShardsLandInTheirSlotRange() {
+        int shards = 6;
+        List<String> keys = StreamShards.keys(STREAM, shards);
+
+        assertEquals(shards, keys.size());
+        for (int shard = 0; shard < shards; shard++) {
+            assertTrue(keys.get(shard).startsWith(STREAM + ":" + shard + ":{"), keys.get(shard));
+            int slot = SlotHash.getSlot(keys.get(shard));
+            assertEquals(shard, slot * shards / SlotHash.SLOT_COUNT, keys.get(shard) + " in slot " + slot);
+        }
+        // Both sides of the pipeline derive the same keys
+        assertEquals(keys, StreamShards.keys(STREAM, shards));
+    }
+
+    @Test
+    void testKeyTaggedWithTheHashTagSharesTheSlotOfTheStream() {
+        for (String key : StreamShards.keys(STREAM, 6)) {
+            assertEquals(SlotHash.getSlot(key), SlotHash.getSlot("claims:{" + StreamShards.hashTag(key) + "}"), key);
+        }
+        assertEquals(STREAM, StreamShards.hashTag(STREAM));
+        assertEquals(SlotHash.getSlot(STREAM), SlotHash.getSlot("claims:{" + StreamShards.hashTag(STREAM) + "}"));
+    }
+}
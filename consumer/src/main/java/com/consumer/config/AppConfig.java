@@ -1,7 +1,14 @@
 package com.consumer.config;
 
+import com.common.retention.StreamRetentionService;
+import com.common.transport.MessageTransport;
+import com.common.transport.RedisTransport;
+import com.common.transport.StreamShards;
+import com.consumer.listener.BatchStreamContainer;
+import com.consumer.listener.ReactiveStreamContainer;
 import com.consumer.listener.StreamConsumer;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,23 +16,35 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.context.annotation.Scope;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.stream.Consumer;
-import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.ReadOffset;
 import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.data.redis.stream.StreamMessageListenerContainer;
 import org.springframework.data.redis.stream.Subscription;
 
 import java.time.Duration;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
+import static com.consumer.config.Constants.CONSUMER_MODE_BATCH;
+import static com.consumer.config.Constants.CONSUMER_MODE_REACTIVE;
+import static com.consumer.config.Constants.EXECUTION_MODE_VIRTUAL;
+import static com.consumer.config.Constants.INIT_FIELD;
 import static com.consumer.config.Constants.SUBSCRIPTION_BEAN_NAME;
 
 @Configuration
@@ -35,6 +54,8 @@ public class AppConfig {
 
     private final RedisConnectionFactory connectionFactory;
     private final RedisTemplate<String, String> redisTemplate;
+    private final ReactiveRedisConnectionFactory reactiveConnectionFactory;
+    private final ReactiveStringRedisTemplate reactiveRedisTemplate;
 
     @Value("${redis.stream.key}")
     private String messageTopicName;
@@ -45,18 +66,53 @@ public class AppConfig {
     @Value("${redis.poll-timeout.ms}")
     private int pollTimeoutMs;
 
+    @Value("${redis.consumer.mode}")
+    private String consumerMode;
+
+    @Value("${redis.consumer.batch-size}")
+    private int batchSize;
+
+    @Value("${redis.consumer.max-in-flight}")
+    private int maxInFlight;
+
+    @Value("${redis.execution.mode}")
+    private String executionMode;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    @Value("${redis.output.stream.key}")
+    private String outputStreamKey;
+
+    @Value("${redis.output.stream.retention.max-len}")
+    private long outputRetentionMaxLen;
+
+    @Value("${redis.output.stream.retention.max-age.ms}")
+    private long outputRetentionMaxAgeMs;
+
+    @Value("${redis.output.stream.retention.trim-limit}")
+    private int outputRetentionTrimLimit;
+
     public record ConsumerSubscription(String id, Subscription subscription) {}
 
     /**
-     * Ensures the Redis stream and its consumer group exist.
+     * Ensures the Redis stream, or every shard of it, and its consumer group exist.
      * If the stream does not exist, it will be created with a dummy message.
      * If the consumer group already exists, it skips creation.
+     * A sharded stream is only read by {@link BatchStreamContainer}s, the other modes read a single stream.
      */
     @PostConstruct
     public void ensureStreamAndGroup() {
+        if (streamShards > 1 && !CONSUMER_MODE_BATCH.equals(consumerMode)) {
+            throw new IllegalStateException("redis.stream.shards=" + streamShards + " needs redis.consumer.mode=batch");
+        }
+        StreamShards.keys(messageTopicName, streamShards).forEach(this::ensureStreamAndGroup);
+    }
+
+    private void ensureStreamAndGroup(String streamKey) {
         try {
-            redisTemplate.opsForStream().add(messageTopicName, Map.of("init", "true"));
-            redisTemplate.opsForStream().createGroup(messageTopicName, ReadOffset.from("0"), consumerGroupName);
+            redisTemplate.opsForStream().add(streamKey, Map.of(INIT_FIELD, "true"));
+            redisTemplate.opsForStream().createGroup(streamKey, ReadOffset.from("0"), consumerGroupName);
         } catch (RedisSystemException e) {
             if (e.getCause().getMessage().contains("BUSYGROUP")) {
                 log.info("Consumer group exists.");
@@ -66,18 +122,97 @@ public class AppConfig {
         }
     }
 
+    /**
+     * Stream operations of the {@link StreamConsumer} outputs, the {@link BatchStreamContainer}s
+     * and the {@link com.consumer.listener.SubscriptionManager}.
+     */
+    @Bean
+    MessageTransport messageTransport() {
+        return new RedisTransport(redisTemplate);
+    }
+
+    /**
+     * Reactive template reading stream field values as raw bytes, used with redis.consumer.mode=reactive.
+     */
+    @Bean
+    ReactiveRedisTemplate<String, String> rawValueReactiveTemplate() {
+        var serializationContext = RedisSerializationContext.<String, String>newSerializationContext(RedisSerializer.string())
+                .hashValue(RedisSerializer.byteArray())
+                .build();
+        return new ReactiveRedisTemplate<>(reactiveConnectionFactory, serializationContext);
+    }
+
+    /**
+     * Runs the polling loops and the listeners.
+     * platform - fixed pool of twice the available processors, every subscription occupies a thread
+     * virtual - a new virtual thread per task, needs Java 21 (mvn -Pjava21), refused at startup on an older runtime
+     */
     @Bean
-    ExecutorService executorService() {
-        var numberOfThreads = Runtime.getRuntime().availableProcessors() * 2;
-        return Executors.newFixedThreadPool(numberOfThreads);
+    Executor executorService() {
+        if (EXECUTION_MODE_VIRTUAL.equals(executionMode)) {
+            if (Runtime.version().feature() < 21) {
+                throw new IllegalStateException("redis.execution.mode=virtual needs a Java 21 runtime, running on Java "
+                        + Runtime.version() + ". Build with mvn -Pjava21 on a JDK 21 or set EXECUTION_MODE=platform");
+            }
+            var executor = new SimpleAsyncTaskExecutor("consumer-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        return Executors.newFixedThreadPool(platformPoolSize());
+    }
+
+    /**
+     * @return threads of the platform pool, twice the available processors
+     */
+    public static int platformPoolSize() {
+        return Runtime.getRuntime().availableProcessors() * 2;
+    }
+
+    /**
+     * Runs the read loop of every {@link BatchStreamContainer} on a thread of its own,
+     * so batch subscriptions never take a thread of the platform pool. Virtual threads with redis.execution.mode=virtual.
+     */
+    @Bean
+    Executor batchContainerExecutor() {
+        if (EXECUTION_MODE_VIRTUAL.equals(executionMode)) {
+            return executorService();
+        }
+        return new SimpleAsyncTaskExecutor("batch-consumer-");
+    }
+
+    /**
+     * Listener container hosting every subscription with redis.execution.mode=virtual.
+     * Each subscription polls on its own virtual thread, so one container serves the whole consumer group.
+     * Started and stopped with the application context.
+     */
+    @Bean
+    @Lazy
+    StreamMessageListenerContainer<String, MapRecord<String, String, byte[]>> sharedListenerContainer() {
+        return listenerContainer();
+    }
+
+    private StreamMessageListenerContainer<String, MapRecord<String, String, byte[]>> listenerContainer() {
+        var options = StreamMessageListenerContainer
+                .StreamMessageListenerContainerOptions.builder()
+                .pollTimeout(Duration.ofMillis(pollTimeoutMs))
+                .<String, byte[]>hashValueSerializer(RedisSerializer.byteArray())
+                .executor(executorService())
+                .build();
+
+        return StreamMessageListenerContainer.create(connectionFactory, options);
     }
 
     /**
      * Creates a prototype-scoped bean for a Redis Stream consumer subscription,
-     * that is a specific implementation of {@link StreamListener <String,  ObjectRecord <String,String>>}
+     * that is a specific implementation of {@link StreamListener <String,  MapRecord <String,String,byte[]>>}
+     * Field values are read as raw bytes, so binary envelopes reach the listener unchanged
      * I am using the implementation instead the interface, because i need the consumer id
      * This sets up a StreamMessageListenerContainer with a dedicated consumer instance
      * and returns a handle to manage the subscription.
+     * With redis.consumer.mode=batch a {@link BatchStreamContainer} reads and writes whole batches instead,
+     * it starts on every shard of a sharded stream until the SubscriptionManager assigns its share,
+     * with redis.consumer.mode=reactive a {@link ReactiveStreamContainer} does so without occupying a thread.
+     * With redis.execution.mode=virtual all record subscriptions share {@link #sharedListenerContainer()}.
      *
      * @param streamListener the listener instance for handling messages
      * @return a ConsumerSubscription representing the active stream consumer
@@ -86,15 +221,25 @@ public class AppConfig {
     @Scope(scopeName = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
     public ConsumerSubscription streamMessageSubscription(StreamConsumer streamListener) {
 
-        var options = StreamMessageListenerContainer
-                .StreamMessageListenerContainerOptions.builder()
-                .pollTimeout(Duration.ofMillis(pollTimeoutMs))
-                .targetType(String.class)
-                .executor(executorService())
-                .build();
+        if (CONSUMER_MODE_BATCH.equals(consumerMode)) {
+            var batchContainer = new BatchStreamContainer(messageTransport(),
+                    Consumer.from(consumerGroupName, streamListener.getConsumerId()),
+                    StreamShards.keys(messageTopicName, streamShards), batchSize, Duration.ofMillis(pollTimeoutMs), streamListener);
+            batchContainer.start(batchContainerExecutor());
+            return new ConsumerSubscription(streamListener.getConsumerId(), batchContainer);
+        }
 
-        var listenerContainer = StreamMessageListenerContainer
-                .create(connectionFactory, options);
+        if (CONSUMER_MODE_REACTIVE.equals(consumerMode)) {
+            var reactiveContainer = new ReactiveStreamContainer(rawValueReactiveTemplate(), reactiveRedisTemplate,
+                    Consumer.from(consumerGroupName, streamListener.getConsumerId()),
+                    messageTopicName, batchSize, maxInFlight, Duration.ofMillis(pollTimeoutMs), streamListener);
+            reactiveContainer.start();
+            return new ConsumerSubscription(streamListener.getConsumerId(), reactiveContainer);
+        }
+
+        var listenerContainer = EXECUTION_MODE_VIRTUAL.equals(executionMode)
+                ? sharedListenerContainer()
+                : listenerContainer();
 
         var subscription = listenerContainer.receiveAutoAck(
                 Consumer.from(consumerGroupName, streamListener.getConsumerId()),
@@ -106,6 +251,16 @@ public class AppConfig {
         return new ConsumerSubscription(streamListener.getConsumerId(), subscription);
     }
 
+    /**
+     * Retention of the output stream the consumers write to.
+     * Every consumer instance trims, the cutoff is the same for all of them.
+     */
+    @Bean
+    StreamRetentionService streamRetentionService(MeterRegistry meterRegistry) {
+        return new StreamRetentionService(redisTemplate, List.of(outputStreamKey),
+                outputRetentionMaxLen, outputRetentionMaxAgeMs, outputRetentionTrimLimit, meterRegistry);
+    }
+
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
@@ -5,4 +5,30 @@ public interface Constants {
     String SUBSCRIPTION_BEAN_NAME = "streamMessageSubscription";
     int METRICS_RATE_MS = 3000;
     int SUBSCRIPTION_CHECK_RATE_MS = 10_000;
+    int RECLAIM_CHECK_RATE_MS = 5000;
+    int AUTOSCALE_CHECK_RATE_MS = 2000;
+    // Field of the dummy record that creates the stream, skipped by the consumers
+    String INIT_FIELD = "init";
+    // Field of a single message written by the bridge, an envelope comes in com.common.codec.Envelope.FIELD_NAME
+    String BODY_FIELD = "body";
+    String CONSUMER_ID_FIELD = "consumerId";
+
+    // Consumer modes, see redis.consumer.mode
+    String CONSUMER_MODE_RECORD = "record";
+    String CONSUMER_MODE_BATCH = "batch";
+    String CONSUMER_MODE_REACTIVE = "reactive";
+
+    // Execution modes, see redis.execution.mode
+    String EXECUTION_MODE_PLATFORM = "platform";
+    String EXECUTION_MODE_VIRTUAL = "virtual";
+
+    // Micrometer meters, exposed on /actuator/prometheus
+    String PROCESSED_METRIC = "consumer.messages.processed";
+    String FAILED_METRIC = "consumer.messages.failed";
+    String SKIPPED_METRIC = "consumer.messages.skipped";
+    String DEAD_LETTERED_METRIC = "consumer.messages.dead.lettered";
+    // Time from the last activity of a dead consumer until its pending entries were recovered
+    String RECOVERY_METRIC = "consumer.reclaim.recovery";
+    String GROUP_LAG_METRIC = "consumer.group.lag";
+    String GROUP_PENDING_METRIC = "consumer.group.pending";
 }
@@ -0,0 +1,159 @@
+package com.consumer.listener;
+
+import com.common.transport.MessageTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.stream.Subscription;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Reads a consumer group in batches of up to {@link #batchSize} records and hands every batch
+ * to a {@link BatchStreamListener}.
+ * The output records of a batch and the XACK of all its records go out in a single pipeline,
+ * instead of one round trip per record.
+ * A sharded stream is read with one XREADGROUP over the shards assigned to the container, up to batchSize
+ * records per shard, see {@link #assign(List)}. Records are acknowledged on the shard they were read from.
+ * Reads and writes go through the {@link MessageTransport}, so the container runs on Redis or in memory.
+ * If the listener fails on a batch, its records are processed again one at a time, the records that still fail
+ * are left pending in the group while the rest is written and acknowledged. The {@link PendingReclaimer} retries them
+ * and dead-letters them after max-deliveries. A batch whose writes fail is not acknowledged and stays pending as a whole.
+ * Every container runs on a thread of its own, see {@link #start(Executor)}.
+ * Implements {@link Subscription}, so it is monitored like a listener container subscription.
+ */
+@Slf4j
+public class BatchStreamContainer implements Subscription {
+
+    private final MessageTransport transport;
+    private final Consumer consumer;
+    private final int batchSize;
+    private final Duration pollTimeout;
+    private final BatchStreamListener listener;
+
+    // Shards read by the next XREADGROUP
+    private volatile List<String> streamKeys;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile boolean active;
+
+    public BatchStreamContainer(MessageTransport transport, Consumer consumer, List<String> streamKeys, int batchSize,
+                                Duration pollTimeout, BatchStreamListener listener) {
+        this.transport = transport;
+        this.consumer = consumer;
+        this.streamKeys = List.copyOf(streamKeys);
+        this.batchSize = batchSize;
+        this.pollTimeout = pollTimeout;
+        this.listener = listener;
+    }
+
+    /**
+     * @param executor runs the read loop, which holds its thread until the container is cancelled
+     */
+    public void start(Executor executor) {
+        active = true;
+        executor.execute(this::run);
+    }
+
+    private void run() {
+        started.countDown();
+        while (active) {
+            try {
+                List<ByteRecord> read = transport.readGroup(streamKeys, consumer.getGroup(), consumer.getName(),
+                        batchSize, pollTimeout);
+                if (!read.isEmpty()) {
+                    process(read);
+                }
+            } catch (Exception e) {
+                if (!active) return;
+                log.warn("Failed to process batch of consumer {}: {}", consumer.getName(), e.getMessage());
+                sleep(pollTimeout);
+            }
+        }
+    }
+
+    /**
+     * Processes the records and writes their outputs and acknowledgement in one pipeline.
+     * Also used by the {@link PendingReclaimer} for records claimed from other consumers.
+     */
+    void process(List<ByteRecord> read) {
+        List<MapRecord<String, String, byte[]>> records = read.stream()
+                .map(record -> record.<String, String, byte[]>deserialize(
+                        RedisSerializer.string(), RedisSerializer.string(), RedisSerializer.byteArray()))
+                .toList();
+        List<MapRecord<String, String, byte[]>> processed = records;
+        List<MapRecord<String, String, String>> results;
+        try {
+            results = listener.onMessages(records);
+        } catch (RuntimeException e) {
+            log.warn("Failed to process batch of consumer {}, retrying its records one at a time: {}",
+                    consumer.getName(), e.getMessage());
+            processed = new ArrayList<>(records.size());
+            results = new ArrayList<>(records.size());
+            for (MapRecord<String, String, byte[]> record : records) {
+                try {
+                    results.addAll(listener.onMessages(List.of(record)));
+                    processed.add(record);
+                } catch (RuntimeException recordFailure) {
+                    log.warn("Leaving record {} of consumer {} pending: {}", record.getId(), consumer.getName(),
+                            recordFailure.getMessage());
+                }
+            }
+        }
+        List<ByteRecord> outputs = results.stream()
+                .map(output -> output.serialize(RedisSerializer.string()))
+                .toList();
+        Map<String, List<RecordId>> ids = processed.stream().collect(Collectors.groupingBy(
+                MapRecord::getStream, LinkedHashMap::new, Collectors.mapping(MapRecord::getId, Collectors.toList())));
+        if (ids.isEmpty()) return;
+
+        transport.appendAndAcknowledge(outputs, consumer.getGroup(), ids);
+        listener.onWritten(outputs.size());
+    }
+
+    /**
+     * Switches the container to the given shards from its next read on.
+     * Records already read from other shards are still acknowledged there.
+     */
+    public void assign(List<String> streamKeys) {
+        this.streamKeys = List.copyOf(streamKeys);
+    }
+
+    public List<String> getStreamKeys() {
+        return streamKeys;
+    }
+
+    @Override
+    public boolean isActive() {
+        return active;
+    }
+
+    @Override
+    public boolean await(Duration timeout) throws InterruptedException {
+        return started.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void cancel() {
+        active = false;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
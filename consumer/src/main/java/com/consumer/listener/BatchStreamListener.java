@@ -0,0 +1,30 @@
+package com.consumer.listener;
+
+import org.springframework.data.redis.connection.stream.MapRecord;
+
+import java.util.List;
+
+/**
+ * Listener contract of the {@link BatchStreamContainer}.
+ * Receives every record of one XREADGROUP at once and returns the records to write,
+ * so the container can send all the writes and the acknowledgement of the batch in one pipeline.
+ */
+@FunctionalInterface
+public interface BatchStreamListener {
+
+    /**
+     * Called again with the records one at a time if it throws, so it must not write anything itself.
+     *
+     * @param records the records of one read, in stream order
+     * @return the records to add, each with its target stream key
+     */
+    List<MapRecord<String, String, String>> onMessages(List<MapRecord<String, String, byte[]>> records);
+
+    /**
+     * Called once the records returned by {@link #onMessages(List)} are written and the batch acknowledged.
+     *
+     * @param outputs the number of records written
+     */
+    default void onWritten(int outputs) {
+    }
+}
@@ -0,0 +1,475 @@
+package com.consumer.listener;
+
+import com.common.transport.MessageTransport;
+import com.common.transport.StreamShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.consumer.config.Constants.DEAD_LETTERED_METRIC;
+import static com.consumer.config.Constants.RECLAIM_CHECK_RATE_MS;
+import static com.consumer.config.Constants.RECOVERY_METRIC;
+
+/**
+ * Recovers the pending entries of consumers that stopped reading, e.g. after a crash
+ * or after {@link SubscriptionManager} replaced an inactive subscription.
+ * Entries idle for min-idle.ms are claimed with XAUTOCLAIM in chunks of batch-size,
+ * the claimed chunks are processed and acknowledged in parallel while the next chunk is claimed.
+ * Entries delivered max-deliveries times already are not processed again, they are moved to the dead-letter stream
+ * with their source stream, ID and delivery count, and acknowledged.
+ * Consumers inactive for consumer-idle.ms without pending entries are removed with XGROUP DELCONSUMER.
+ * An entry is recovered within min-idle.ms + {@link com.consumer.config.Constants#RECLAIM_CHECK_RATE_MS}
+ * plus the time to process the backlog, the actual recovery time of dead consumers is logged
+ * and recorded by the {@link com.consumer.config.Constants#RECOVERY_METRIC} timer.
+ * {@link #drain(String, Duration)} hands the entries of a retired consumer over the same way.
+ * Every shard of a sharded stream has its own pending entries lists and consumers, they are reclaimed one after another.
+ * Entries read with redis.consumer.mode=record are auto-acknowledged and never become pending.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class PendingReclaimer {
+
+    // Returns [next cursor, [[id, [field, value, ...]], ...]], the fields of a deleted entry are nil
+    private static final byte[] AUTOCLAIM_SCRIPT = ("return redis.call('XAUTOCLAIM', KEYS[1], ARGV[1], ARGV[2], "
+            + "ARGV[3], ARGV[4], 'COUNT', ARGV[5])").getBytes(StandardCharsets.UTF_8);
+
+    private static final String CURSOR_START = "0-0";
+
+    // Fields added to a dead-lettered entry
+    private static final byte[] SOURCE_STREAM_FIELD = "source_stream".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SOURCE_ID_FIELD = "source_id".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DELIVERIES_FIELD = "deliveries".getBytes(StandardCharsets.UTF_8);
+
+    private final RedisTemplate<String, String> redisTemplate;
+    private final MessageTransport transport;
+    private final StreamConsumer streamConsumer;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${redis.reclaim.enabled}")
+    private boolean enabled;
+
+    @Value("${redis.stream.key}")
+    private String streamKey;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    @Value("${redis.consumer-group.id}")
+    private String consumerGroupName;
+
+    @Value("${redis.active-subscription-key}")
+    private String activeSubscriptionKey;
+
+    @Value("${redis.consumer.batch-size}")
+    private int batchSize;
+
+    @Value("${redis.poll-timeout.ms}")
+    private int pollTimeoutMs;
+
+    @Value("${redis.reclaim.min-idle.ms}")
+    private long minIdleMs;
+
+    @Value("${redis.reclaim.consumer-idle.ms}")
+    private long consumerIdleMs;
+
+    @Value("${redis.reclaim.parallelism}")
+    private int parallelism;
+
+    @Value("${redis.reclaim.max-deliveries}")
+    private long maxDeliveries;
+
+    @Value("${redis.reclaim.dead-letter.stream.key}")
+    private String deadLetterStreamKey;
+
+    private List<String> streamKeys;
+    // Processes claimed chunks under the reclaimer's own consumer name
+    private BatchStreamContainer writer;
+    private ExecutorService executor;
+
+    private final AtomicLong reclaimed = new AtomicLong();
+    private final AtomicLong removedConsumers = new AtomicLong();
+    private Counter deadLettered;
+    private Timer recoveryTime;
+
+    // Time in milliseconds from the last activity of a dead consumer until all its entries were recovered
+    @Getter
+    private volatile long lastRecoveryMs = -1;
+
+    @PostConstruct
+    public void init() {
+        streamKeys = StreamShards.keys(streamKey, streamShards);
+        writer = new BatchStreamContainer(transport, Consumer.from(consumerGroupName, streamConsumer.getConsumerId()),
+                streamKeys, batchSize, Duration.ofMillis(pollTimeoutMs), streamConsumer);
+        executor = Executors.newFixedThreadPool(Math.max(1, parallelism), runnable -> new Thread(runnable, "pending-reclaimer"));
+        deadLettered = meterRegistry.counter(DEAD_LETTERED_METRIC);
+        recoveryTime = meterRegistry.timer(RECOVERY_METRIC);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public long getReclaimedCount() {
+        return reclaimed.get();
+    }
+
+    public long getRemovedConsumerCount() {
+        return removedConsumers.get();
+    }
+
+    public long getDeadLetteredCount() {
+        return (long) deadLettered.count();
+    }
+
+    /**
+     * Claims and processes idle pending entries, then removes stale consumers.
+     * Runs every {@link com.consumer.config.Constants#RECLAIM_CHECK_RATE_MS}.
+     */
+    @Scheduled(fixedRate = RECLAIM_CHECK_RATE_MS)
+    public void reclaim() {
+        if (!enabled) return;
+        Set<String> removed = new HashSet<>();
+        Set<String> kept = new HashSet<>();
+        Set<String> registered = registeredConsumers();
+        for (String streamKey : streamKeys) {
+            reclaim(streamKey, registered, removed, kept);
+        }
+        // Drops the subscription IDs a crashed instance left behind, once they are gone from every shard
+        removed.removeAll(kept);
+        removed.forEach(name -> redisTemplate.opsForList().remove(activeSubscriptionKey, 0, name));
+    }
+
+    private void reclaim(String streamKey, Set<String> registered, Set<String> removed, Set<String> kept) {
+        try {
+            long start = System.currentTimeMillis();
+            // Idle time of the consumers whose entries are recovered in this run
+            Map<String, Long> deadConsumers = new HashMap<>();
+            for (StreamInfo.XInfoConsumer consumer : consumers(streamKey)) {
+                long idleMs = idleMs(consumer);
+                if (consumer.pendingCount() > 0 && idleMs >= minIdleMs) {
+                    deadConsumers.put(consumer.consumerName(), idleMs);
+                }
+            }
+
+            deadLetterExhausted(streamKey);
+            long claimed = claimAll(streamKey);
+            long elapsed = System.currentTimeMillis() - start;
+            if (claimed > 0) {
+                reclaimed.addAndGet(claimed);
+                log.info("Reclaimed {} entries pending for over {} ms in {} ms (total: {})",
+                        claimed, minIdleMs, elapsed, reclaimed.get());
+            }
+
+            removeStaleConsumers(streamKey, deadConsumers, elapsed, registered, removed, kept);
+        } catch (Exception e) {
+            log.warn("Failed to reclaim pending entries of '{}': {}", streamKey, e.getMessage());
+        }
+    }
+
+    /**
+     * Claims and processes a page of the entries pending under the given consumer, that were delivered
+     * at least minIdle ago, so a batch the consumer may still be processing is left alone.
+     * Entries deleted from the stream are acknowledged instead.
+     * @return number of entries found pending under the consumer, at most the batch size per shard, 0 once it is drained
+     */
+    public long drain(String consumerName, Duration minIdle) {
+        long pending = 0;
+        for (String streamKey : streamKeys) {
+            pending += drain(streamKey, consumerName, minIdle);
+        }
+        return pending;
+    }
+
+    private long drain(String streamKey, String consumerName, Duration minIdle) {
+        PendingMessages pending = redisTemplate.opsForStream().pending(streamKey,
+                Consumer.from(consumerGroupName, consumerName), Range.unbounded(), batchSize);
+        if (pending == null || pending.isEmpty()) return 0;
+
+        List<PendingMessage> idleMessages = pending.stream()
+                .filter(message -> message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                .toList();
+        List<PendingMessage> exhausted = idleMessages.stream().filter(this::isExhausted).toList();
+        if (!exhausted.isEmpty()) {
+            deadLetter(streamKey, exhausted, minIdle);
+        }
+        RecordId[] idle = idleMessages.stream()
+                .filter(message -> !isExhausted(message))
+                .map(PendingMessage::getId)
+                .toArray(RecordId[]::new);
+        if (idle.length == 0) return pending.size();
+
+        List<ByteRecord> claimed = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xClaim(bytes(streamKey), consumerGroupName, streamConsumer.getConsumerId(),
+                        XClaimOptions.minIdle(minIdle).ids(idle)));
+        if (claimed != null && !claimed.isEmpty()) {
+            writer.process(claimed.stream().map(record -> record.withStreamKey(bytes(streamKey))).toList());
+        }
+        int claimedCount = claimed == null ? 0 : claimed.size();
+        if (claimedCount < idle.length) {
+            acknowledgeDeleted(streamKey, idle, claimed == null ? List.of() : claimed);
+        }
+        reclaimed.addAndGet(claimedCount);
+        return pending.size();
+    }
+
+    /**
+     * XCLAIM before Redis 7.0 skips entries deleted from the stream and leaves them pending,
+     * the ones that are really gone are acknowledged.
+     */
+    private void acknowledgeDeleted(String streamKey, RecordId[] ids, List<ByteRecord> claimed) {
+        Set<RecordId> claimedIds = claimed.stream().map(ByteRecord::getId).collect(Collectors.toSet());
+        RecordId[] deleted = Arrays.stream(ids)
+                .filter(id -> !claimedIds.contains(id))
+                .filter(id -> redisTemplate.opsForStream().range(streamKey, Range.closed(id.getValue(), id.getValue())).isEmpty())
+                .toArray(RecordId[]::new);
+        if (deleted.length > 0) {
+            redisTemplate.opsForStream().acknowledge(streamKey, consumerGroupName, deleted);
+        }
+    }
+
+    /**
+     * Walks the PEL with XPENDING and moves the idle entries delivered max-deliveries times to the dead-letter stream,
+     * before XAUTOCLAIM hands them to the consumer once more.
+     */
+    private void deadLetterExhausted(String streamKey) {
+        if (maxDeliveries <= 0) return;
+        Duration minIdle = Duration.ofMillis(minIdleMs);
+        Range<String> range = Range.unbounded();
+        while (true) {
+            PendingMessages page = redisTemplate.opsForStream().pending(streamKey, consumerGroupName, range, batchSize);
+            if (page == null || page.isEmpty()) return;
+
+            List<PendingMessage> exhausted = page.stream()
+                    .filter(message -> isExhausted(message) && message.getElapsedTimeSinceLastDelivery().compareTo(minIdle) >= 0)
+                    .toList();
+            if (!exhausted.isEmpty()) {
+                deadLetter(streamKey, exhausted, minIdle);
+            }
+            if (page.size() < batchSize) return;
+            RecordId last = page.get(page.size() - 1).getId();
+            range = Range.rightUnbounded(Range.Bound.inclusive(RecordId.of(last.getTimestamp(), last.getSequence() + 1).getValue()));
+        }
+    }
+
+    private boolean isExhausted(PendingMessage message) {
+        return maxDeliveries > 0 && message.getTotalDeliveryCount() >= maxDeliveries;
+    }
+
+    /**
+     * Claims the entries, so no other instance dead-letters them as well, appends them to the dead-letter stream
+     * and acknowledges them in one round trip.
+     */
+    private void deadLetter(String streamKey, List<PendingMessage> exhausted, Duration minIdle) {
+        Map<RecordId, Long> deliveries = exhausted.stream()
+                .collect(Collectors.toMap(PendingMessage::getId, PendingMessage::getTotalDeliveryCount, Long::sum, LinkedHashMap::new));
+        RecordId[] ids = deliveries.keySet().toArray(RecordId[]::new);
+        List<ByteRecord> claimed = redisTemplate.execute((RedisCallback<List<ByteRecord>>) connection ->
+                connection.streamCommands().xClaim(bytes(streamKey), consumerGroupName, streamConsumer.getConsumerId(),
+                        XClaimOptions.minIdle(minIdle).ids(ids)));
+        if (claimed == null) claimed = List.of();
+        if (!claimed.isEmpty()) {
+            List<MapRecord<byte[], byte[], byte[]>> entries = new ArrayList<>(claimed.size());
+            for (ByteRecord record : claimed) {
+                Map<byte[], byte[]> fields = new LinkedHashMap<>(record.getValue());
+                fields.put(SOURCE_STREAM_FIELD, bytes(streamKey));
+                fields.put(SOURCE_ID_FIELD, bytes(record.getId().getValue()));
+                fields.put(DELIVERIES_FIELD, bytes(String.valueOf(deliveries.get(record.getId()))));
+                entries.add(StreamRecords.rawBytes(fields).withStreamKey(bytes(deadLetterStreamKey)));
+            }
+            transport.appendAndAcknowledge(entries, consumerGroupName,
+                    Map.of(streamKey, claimed.stream().map(ByteRecord::getId).toList()));
+            deadLettered.increment(claimed.size());
+            log.warn("Moved {} entries of '{}' delivered {} times or more to '{}'",
+                    claimed.size(), streamKey, maxDeliveries, deadLetterStreamKey);
+        }
+        if (claimed.size() < ids.length) {
+            acknowledgeDeleted(streamKey, ids, claimed);
+        }
+    }
+
+    /**
+     * Walks the PEL with XAUTOCLAIM, at most {@link #parallelism} claimed chunks are processed at a time.
+     * A chunk that fails stays pending under the reclaimer and is claimed again once it is idle.
+     * @return number of claimed entries
+     */
+    private long claimAll(String streamKey) throws InterruptedException {
+        Deque<Future<?>> inFlight = new ArrayDeque<>();
+        long claimed = 0;
+        String cursor = CURSOR_START;
+        do {
+            List<Object> result = claim(streamKey, cursor);
+            cursor = new String((byte[]) result.get(0), StandardCharsets.UTF_8);
+            List<ByteRecord> records = toRecords(streamKey, (List<?>) result.get(1));
+            if (records.isEmpty()) continue;
+
+            claimed += records.size();
+            if (inFlight.size() >= parallelism) {
+                awaitChunk(inFlight.poll());
+            }
+            inFlight.add(executor.submit(() -> writer.process(records)));
+        } while (!CURSOR_START.equals(cursor));
+
+        while (!inFlight.isEmpty()) {
+            awaitChunk(inFlight.poll());
+        }
+        return claimed;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> claim(String streamKey, String cursor) {
+        byte[][] keysAndArgs = {
+                bytes(streamKey), bytes(consumerGroupName), bytes(streamConsumer.getConsumerId()),
+                bytes(String.valueOf(minIdleMs)), bytes(cursor), bytes(String.valueOf(batchSize))
+        };
+        return redisTemplate.execute((RedisCallback<List<Object>>) connection ->
+                connection.scriptingCommands().eval(AUTOCLAIM_SCRIPT, ReturnType.MULTI, 1, keysAndArgs));
+    }
+
+    /**
+     * Converts the claimed entries to records. Entries deleted from the stream while pending
+     * have no fields left to process and are acknowledged right away.
+     */
+    private List<ByteRecord> toRecords(String streamKey, List<?> entries) {
+        List<ByteRecord> records = new ArrayList<>(entries.size());
+        List<RecordId> deleted = new ArrayList<>();
+        for (Object entry : entries) {
+            List<?> idAndFields = (List<?>) entry;
+            RecordId id = RecordId.of(new String((byte[]) idAndFields.get(0), StandardCharsets.UTF_8));
+            if (idAndFields.size() < 2 || !(idAndFields.get(1) instanceof List<?> fields)) {
+                deleted.add(id);
+                continue;
+            }
+            Map<byte[], byte[]> body = new LinkedHashMap<>();
+            for (int i = 0; i + 1 < fields.size(); i += 2) {
+                body.put((byte[]) fields.get(i), (byte[]) fields.get(i + 1));
+            }
+            records.add(StreamRecords.rawBytes(body).withId(id).withStreamKey(bytes(streamKey)));
+        }
+        if (!deleted.isEmpty()) {
+            redisTemplate.opsForStream().acknowledge(streamKey, consumerGroupName, deleted.toArray(RecordId[]::new));
+        }
+        return records;
+    }
+
+    /**
+     * Removes consumers inactive for {@link #consumerIdleMs} that have nothing pending anymore
+     * and reports how long the recovery of the dead consumers took.
+     * Before Redis 7.2 XINFO CONSUMERS has no inactive time, only the time since a consumer last got entries,
+     * which grows on a live consumer of an idle stream. Then only consumers missing from the registry
+     * of active subscriptions are removed, those of crashed instances stay until Redis reports the inactive time.
+     * The names of the removed and of the remaining consumers are added to removed and kept.
+     */
+    private void removeStaleConsumers(String streamKey, Map<String, Long> deadConsumers, long elapsed,
+                                      Set<String> registered, Set<String> removed, Set<String> kept) {
+        for (StreamInfo.XInfoConsumer consumer : consumers(streamKey)) {
+            String name = consumer.consumerName();
+            if (consumer.pendingCount() > 0) {
+                kept.add(name);
+                continue;
+            }
+
+            Long idleMs = deadConsumers.get(name);
+            if (idleMs != null) {
+                lastRecoveryMs = idleMs + elapsed;
+                recoveryTime.record(lastRecoveryMs, TimeUnit.MILLISECONDS);
+                log.info("Recovered the pending entries of consumer {} {} ms after its last activity (bound: {} ms + processing)",
+                        name, lastRecoveryMs, minIdleMs + RECLAIM_CHECK_RATE_MS);
+            }
+            long inactiveMs = inactiveMs(consumer);
+            boolean stale = inactiveMs >= 0
+                    ? inactiveMs >= consumerIdleMs
+                    : consumer.idleTimeMs() >= consumerIdleMs && !registered.contains(name);
+            if (stale && !name.equals(streamConsumer.getConsumerId())) {
+                redisTemplate.opsForStream().deleteConsumer(streamKey, Consumer.from(consumerGroupName, name));
+                removed.add(name);
+                removedConsumers.incrementAndGet();
+                log.info("Removed stale consumer {} inactive for {} ms", name, idleMs(consumer));
+            } else {
+                kept.add(name);
+            }
+        }
+    }
+
+    private List<StreamInfo.XInfoConsumer> consumers(String streamKey) {
+        StreamInfo.XInfoConsumers consumers = redisTemplate.opsForStream().consumers(streamKey, consumerGroupName);
+        return consumers == null ? List.of() : consumers.toList();
+    }
+
+    private Set<String> registeredConsumers() {
+        List<String> registered = redisTemplate.opsForList().range(activeSubscriptionKey, 0, -1);
+        return registered == null ? Set.of() : new HashSet<>(registered);
+    }
+
+    /**
+     * @return time since the consumer last tried to read, reported as inactive since Redis 7.2, -1 on older versions
+     */
+    private static long inactiveMs(StreamInfo.XInfoConsumer consumer) {
+        if (consumer.getRaw().get("inactive") instanceof Number inactive && inactive.longValue() >= 0) {
+            return inactive.longValue();
+        }
+        return -1;
+    }
+
+    /**
+     * @return the inactive time, or before Redis 7.2 the time since the consumer last got entries
+     */
+    private static long idleMs(StreamInfo.XInfoConsumer consumer) {
+        long inactiveMs = inactiveMs(consumer);
+        return inactiveMs >= 0 ? inactiveMs : consumer.idleTimeMs();
+    }
+
+    private static void awaitChunk(Future<?> chunk) throws InterruptedException {
+        try {
+            chunk.get();
+        } catch (ExecutionException e) {
+            log.warn("Failed to process reclaimed entries: {}", e.getCause().getMessage());
+        }
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
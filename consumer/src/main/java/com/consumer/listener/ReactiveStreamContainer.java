@@ -0,0 +1,110 @@
+package com.consumer.listener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.stream.Subscription;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking consumer group member on the reactive Redis API.
+ * Reads batches of up to {@link #batchSize} records with XREADGROUP and processes them with a {@link BatchStreamListener}
+ * on the parallel scheduler, the outputs are written with non-blocking XADDs followed by one XACK of the batch.
+ * At most {@link #maxInFlight} batches are processed at a time, the next batch is only read when there is demand for it.
+ * Reads don't block on the server, an empty read is retried after {@link #pollTimeout}, so every command
+ * of every container shares the one multiplexed connection of the connection factory and no thread waits for Redis.
+ * A batch that fails to be processed or written is not acknowledged and stays pending in the group.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class ReactiveStreamContainer implements Subscription {
+
+    // Hash values are read as raw bytes
+    private final ReactiveRedisTemplate<String, String> readTemplate;
+    private final ReactiveRedisTemplate<String, String> writeTemplate;
+    private final Consumer consumer;
+    private final String streamKey;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final Duration pollTimeout;
+    private final BatchStreamListener listener;
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private volatile Disposable subscription;
+
+    public void start() {
+        var readOptions = StreamReadOptions.empty().count(batchSize);
+        var offset = StreamOffset.create(streamKey, ReadOffset.lastConsumed());
+        subscription = Mono.defer(() -> read(readOptions, offset))
+                .repeat()
+                .flatMap(this::process, maxInFlight)
+                .subscribe();
+        started.countDown();
+    }
+
+    private Mono<List<MapRecord<String, String, byte[]>>> read(StreamReadOptions readOptions, StreamOffset<String> offset) {
+        // read only takes the offsets as generic varargs, its array of the single offset is never exposed
+        @SuppressWarnings("unchecked")
+        Flux<MapRecord<String, String, byte[]>> records = readTemplate.<String, byte[]>opsForStream()
+                .read(consumer, readOptions, offset);
+        return records
+                .collectList()
+                .flatMap(batch -> batch.isEmpty() ? idle() : Mono.just(batch))
+                .onErrorResume(e -> {
+                    log.warn("Failed to read batch of consumer {}: {}", consumer.getName(), e.getMessage());
+                    return idle();
+                });
+    }
+
+    private Mono<Void> process(List<MapRecord<String, String, byte[]>> records) {
+        RecordId[] ids = records.stream().map(MapRecord::getId).toArray(RecordId[]::new);
+        return Mono.fromCallable(() -> listener.onMessages(records))
+                .subscribeOn(Schedulers.parallel())
+                .flatMap(outputs -> Flux.fromIterable(outputs)
+                        .flatMap(output -> writeTemplate.<String, String>opsForStream().add(output))
+                        .then(writeTemplate.opsForStream().acknowledge(streamKey, consumer.getGroup(), ids))
+                        .doOnSuccess(acknowledged -> listener.onWritten(outputs.size())))
+                .then()
+                .onErrorResume(e -> {
+                    log.warn("Failed to process batch of consumer {}: {}", consumer.getName(), e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private <T> Mono<T> idle() {
+        return Mono.delay(pollTimeout).then(Mono.empty());
+    }
+
+    @Override
+    public boolean isActive() {
+        Disposable current = subscription;
+        return current != null && !current.isDisposed();
+    }
+
+    @Override
+    public boolean await(Duration timeout) throws InterruptedException {
+        return started.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void cancel() {
+        Disposable current = subscription;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+}
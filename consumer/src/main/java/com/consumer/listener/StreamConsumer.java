@@ -1,36 +1,65 @@
 package com.consumer.listener;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+import com.common.codec.Envelope;
+import com.common.codec.MessageCodecs;
+import com.common.metrics.PipelineLatency;
+import com.common.transport.MessageTransport;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.Getter;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.context.annotation.Scope;
-import org.springframework.data.redis.connection.stream.ObjectRecord;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.MapRecord;
 import org.springframework.data.redis.connection.stream.StreamRecords;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.stream.StreamListener;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
+import static com.consumer.config.Constants.BODY_FIELD;
 import static com.consumer.config.Constants.CONSUMER_BEAN_NAME;
+import static com.consumer.config.Constants.CONSUMER_ID_FIELD;
+import static com.consumer.config.Constants.FAILED_METRIC;
+import static com.consumer.config.Constants.INIT_FIELD;
+import static com.consumer.config.Constants.PROCESSED_METRIC;
+import static com.consumer.config.Constants.SKIPPED_METRIC;
 
 /**
  * Prototype-scoped Redis Stream consumer that processes incoming records
- * and writes processed data to another Redis Stream.
+ * and writes processed data to another Redis Stream through the {@link MessageTransport}.
+ * Only the payload fields, "body" and {@link Envelope#FIELD_NAME}, are decoded, with the codec they were written in,
+ * see {@link MessageCodecs#detect(byte[])}, straight into the output record, which only gets the consumerId appended.
+ * Other fields, like the ingress time, are never decoded. The init record that creates the stream is skipped by its field name.
+ * An entry in {@link Envelope} format carries several messages, each of them is processed
+ * and the entry is acknowledged once as a whole.
+ * Used as a record listener of a listener container, or as a {@link BatchStreamListener}
+ * with redis.consumer.mode=batch.
+ * Processed, failed (undecodable) and skipped (init) messages are counted in the {@link MeterRegistry},
+ * in counters shared by all consumers of the instance, so retired consumers leave no meters behind.
+ * A message counts as processed once its output is written.
+ * Every entry records the time since it was written, taken from its ID, the time it took to process
+ * and, if the bridge stamped it, the time since the bridge received it in the {@link PipelineLatency} timers.
+ * See {@link PipelineLatency} for the clocks each of them compares.
  */
 @Service(CONSUMER_BEAN_NAME)
 @Scope(scopeName = ConfigurableBeanFactory.SCOPE_PROTOTYPE)
-@RequiredArgsConstructor
 @Slf4j
-public class StreamConsumer implements StreamListener<String, ObjectRecord<String,String>> {
+public class StreamConsumer implements StreamListener<String, MapRecord<String, String, byte[]>>, BatchStreamListener {
 
-    private final RedisTemplate<String, String> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final MessageTransport transport;
 
     @Value("${redis.output.stream.key}")
     private String outputStreamKey;
@@ -38,21 +67,85 @@ public class StreamConsumer implements StreamListener<String, ObjectRecord<Strin
     @Getter
     private final String consumerId = UUID.randomUUID().toString();
 
+    private final Counter processed;
+    private final Counter failed;
+    private final Counter skipped;
+    private final Timer streamLatency;
+    private final Timer processLatency;
+    private final Timer endToEndLatency;
+
+    public StreamConsumer(MessageTransport transport, MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.processed = meterRegistry.counter(PROCESSED_METRIC);
+        this.failed = meterRegistry.counter(FAILED_METRIC);
+        this.skipped = meterRegistry.counter(SKIPPED_METRIC);
+        this.streamLatency = PipelineLatency.timer(meterRegistry, PipelineLatency.HOP_STREAM);
+        this.processLatency = PipelineLatency.timer(meterRegistry, PipelineLatency.HOP_PROCESS);
+        this.endToEndLatency = PipelineLatency.timer(meterRegistry, PipelineLatency.HOP_END_TO_END);
+    }
+
+    @Override
+    public void onMessage(MapRecord<String, String, byte[]> message) {
+        List<MapRecord<String, String, String>> outputs = new ArrayList<>(1);
+        process(message, outputs);
+        List<ByteRecord> entries = new ArrayList<>(outputs.size());
+        outputs.forEach(output -> entries.add(output.serialize(RedisSerializer.string())));
+        transport.append(entries);
+        processed.increment(entries.size());
+    }
+
+    @Override
+    public List<MapRecord<String, String, String>> onMessages(List<MapRecord<String, String, byte[]>> messages) {
+        List<MapRecord<String, String, String>> outputs = new ArrayList<>(messages.size());
+        messages.forEach(message -> process(message, outputs));
+        return outputs;
+    }
+
     @Override
-    public void onMessage(ObjectRecord<String, String> message) {
-        Map<String, String> valueMap;
+    public void onWritten(int outputs) {
+        processed.increment(outputs);
+    }
+
+    private void process(MapRecord<String, String, byte[]> message, List<MapRecord<String, String, String>> outputs) {
+        long start = System.nanoTime();
+        // The entry ID is the time the bridge wrote it, on the Redis server clock
+        streamLatency.record(System.currentTimeMillis() - message.getId().getTimestamp(), TimeUnit.MILLISECONDS);
+        Map<String, byte[]> fields = message.getValue();
+        if (fields.containsKey(INIT_FIELD)) {
+            skipped.increment();
+        }
+        // Only the payload fields are decoded, any other field the entry carries is metadata
+        byte[] body = fields.get(BODY_FIELD);
+        if (body != null) {
+            process(body, outputs);
+        }
+        byte[] envelope = fields.get(Envelope.FIELD_NAME);
+        if (envelope != null) {
+            Envelope.unpack(envelope).forEach(packed -> process(packed, outputs));
+        }
+        processLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        byte[] ingress = fields.get(PipelineLatency.INGRESS_FIELD_NAME);
+        if (ingress != null) {
+            // Received on the bridge's clock, processed on this one
+            long ingressMillis = Long.parseLong(new String(ingress, StandardCharsets.US_ASCII));
+            endToEndLatency.record(System.currentTimeMillis() - ingressMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void process(byte[] body, List<MapRecord<String, String, String>> outputs) {
+        // Sized for message_id and consumerId without a resize
+        Map<String, String> valueMap = new LinkedHashMap<>(4);
         try {
-            valueMap = objectMapper.readValue(message.getValue(), Map.class);
-        } catch (MismatchedInputException e) {
-            log.debug("Init message", e);
-            return;
-        } catch (Exception e) {
-            log.warn("Error processing message", e);
+            // Typed values are written to the output stream in their string form
+            MessageCodecs.detect(body).decode(body, (name, value) -> valueMap.put(name, Objects.toString(value, null)));
+        } catch (IOException e) {
+            log.warn("Error processing message: {}", e.getMessage());
+            failed.increment();
             return;
         }
 
-        valueMap.put("consumerId", consumerId);
+        valueMap.put(CONSUMER_ID_FIELD, consumerId);
 
-        redisTemplate.opsForStream().add(StreamRecords.mapBacked(valueMap).withStreamKey(outputStreamKey));
+        outputs.add(StreamRecords.mapBacked(valueMap).withStreamKey(outputStreamKey));
     }
 }
@@ -0,0 +1,108 @@
+package com.consumer.listener;
+
+import com.consumer.metrics.ConsumerGroupStats;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import static com.consumer.config.Constants.AUTOSCALE_CHECK_RATE_MS;
+
+/**
+ * Scales the subscriptions of this instance between min and max with the backlog of the consumer group.
+ * The backlog is the group's lag (entries not delivered yet) plus its pending entries, see {@link ConsumerGroupStats}.
+ * It is shared by the subscriptions of every instance in the group, so it is divided by their count in the registry.
+ * Once the backlog per subscription stays above scale-up-backlog for the given number of samples in a row,
+ * subscriptions are added until the group has up to one per scale-up-backlog entries, every instance grows
+ * by the same factor. Once it stays below scale-down-backlog, one subscription is retired per round.
+ * The gap between the two thresholds and the consecutive samples keep it from flapping.
+ * Max is capped at the {@link SubscriptionManager#capacity()} of the instance.
+ * Retired subscriptions are drained by the {@link SubscriptionManager}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SubscriptionAutoscaler {
+
+    private final SubscriptionManager subscriptionManager;
+    private final ConsumerGroupStats consumerGroupStats;
+
+    @Value("${redis.consumer-group.autoscale.enabled}")
+    private boolean enabled;
+
+    @Value("${redis.consumer-group.autoscale.min}")
+    private int minSubscriptions;
+
+    @Value("${redis.consumer-group.autoscale.max}")
+    private int maxSubscriptions;
+
+    @Value("${redis.consumer-group.autoscale.scale-up-backlog}")
+    private long scaleUpBacklog;
+
+    @Value("${redis.consumer-group.autoscale.scale-down-backlog}")
+    private long scaleDownBacklog;
+
+    @Value("${redis.consumer-group.autoscale.samples}")
+    private int samples;
+
+    // Consecutive samples above the scale-up and below the scale-down threshold
+    private int samplesAbove;
+    private int samplesBelow;
+
+    @Getter
+    private volatile long lastBacklog = -1;
+
+    /**
+     * Samples the backlog and adds or retires subscriptions.
+     * Runs every {@link com.consumer.config.Constants#AUTOSCALE_CHECK_RATE_MS}.
+     */
+    @Scheduled(fixedRate = AUTOSCALE_CHECK_RATE_MS)
+    public void scale() {
+        if (!enabled) return;
+        try {
+            subscriptionManager.drainRetired();
+
+            // Counting undelivered entries beyond the point where max subscriptions are needed makes no difference
+            ConsumerGroupStats.Sample sample = consumerGroupStats.sample(scaleUpBacklog * maxSubscriptions);
+            if (sample == null) return;
+            long backlog = sample.backlog();
+            lastBacklog = backlog;
+
+            int subscriptions = subscriptionManager.size();
+            long groupSubscriptions = Math.max(subscriptions, consumerGroupStats.activeSubscriptions());
+            long perSubscription = backlog / Math.max(1, groupSubscriptions);
+            samplesAbove = perSubscription > scaleUpBacklog ? samplesAbove + 1 : 0;
+            samplesBelow = perSubscription < scaleDownBacklog ? samplesBelow + 1 : 0;
+
+            int max = Math.min(maxSubscriptions, subscriptionManager.capacity());
+            if (subscriptions < minSubscriptions) {
+                resize(subscriptions, Math.min(minSubscriptions, max), backlog);
+            } else if (subscriptions > max) {
+                resize(subscriptions, max, backlog);
+            } else if (samplesAbove >= samples && subscriptions < max) {
+                long needed = (backlog + scaleUpBacklog - 1) / scaleUpBacklog;
+                // This instance's share of what the group needs, in proportion to the subscriptions it runs now
+                long share = groupSubscriptions == 0 ? needed : (needed * subscriptions + groupSubscriptions - 1) / groupSubscriptions;
+                resize(subscriptions, (int) Math.min(max, Math.max(subscriptions + 1, share)), backlog);
+            } else if (samplesBelow >= samples && subscriptions > minSubscriptions) {
+                resize(subscriptions, subscriptions - 1, backlog);
+            }
+        } catch (Exception e) {
+            log.warn("Failed to autoscale subscriptions: {}", e.getMessage());
+        }
+    }
+
+    private void resize(int current, int target, long backlog) {
+        log.info("Scaling subscriptions from {} to {}, backlog: {}", current, target, backlog);
+        for (int i = current; i < target; i++) {
+            subscriptionManager.addSubscription();
+        }
+        for (int i = current; i > target; i--) {
+            subscriptionManager.retireSubscription();
+        }
+        samplesAbove = 0;
+        samplesBelow = 0;
+    }
+}
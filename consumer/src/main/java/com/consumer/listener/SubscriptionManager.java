@@ -1,37 +1,54 @@
 package com.consumer.listener;
 
+import com.common.transport.MessageTransport;
+import com.common.transport.StreamShards;
 import com.consumer.config.AppConfig;
 import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.SmartLifecycle;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.stream.Subscription;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
-import java.util.HashMap;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import static com.consumer.config.Constants.CONSUMER_MODE_RECORD;
+import static com.consumer.config.Constants.EXECUTION_MODE_PLATFORM;
 import static com.consumer.config.Constants.SUBSCRIPTION_BEAN_NAME;
 import static com.consumer.config.Constants.SUBSCRIPTION_CHECK_RATE_MS;
 
 /**
  * Manages Redis Stream consumer subscriptions.
+ * The group and the registry of active subscriptions are updated through the {@link MessageTransport}.
  * - Automatically registers a fixed number of stream consumers at startup.
  * - Monitors and restarts inactive subscriptions on a scheduled basis.
+ * - Adds and retires subscriptions on behalf of the {@link SubscriptionAutoscaler}.
+ *   A retired subscription stops reading and is removed from the group once its pending entries are drained.
+ * - Assigns the shards of a sharded stream to the {@link BatchStreamContainer}s whenever a subscription
+ *   is added or retired, so every shard is read by at least one of them.
  * - Implements SmartLifecycle for clean startup and shutdown
  *   and to execute a cleanUp logic on the activeSubscriptions RedisList
+ * The subscriptions are changed by several scheduled tasks and the lifecycle, every change holds the monitor of the manager.
+ * On the platform pool each record subscription holds a thread for good, so no more than {@link #capacity()} are started.
  */
 @Component
 @RequiredArgsConstructor
+@Slf4j
 public class SubscriptionManager implements SmartLifecycle {
 
     private final ApplicationContext context;
-    private final RedisTemplate<String, String> redisTemplate;
+    private final MessageTransport transport;
+    private final PendingReclaimer pendingReclaimer;
 
     @Value("${redis.consumer-group.size}")
     private int consumerGroupSize;
@@ -39,14 +56,40 @@ public class SubscriptionManager implements SmartLifecycle {
     @Value("${redis.active-subscription-key}")
     private String activeSubscriptionKey;
 
-    Map<String, Subscription> activeSubscriptions = new HashMap<>();
+    @Value("${redis.stream.key}")
+    private String streamKey;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    @Value("${redis.consumer-group.id}")
+    private String consumerGroupName;
+
+    @Value("${redis.poll-timeout.ms}")
+    private int pollTimeoutMs;
+
+    @Value("${redis.consumer.mode}")
+    private String consumerMode;
+
+    @Value("${redis.execution.mode}")
+    private String executionMode;
+
+    // In registration order, the newest subscription is retired first
+    Map<String, Subscription> activeSubscriptions = new LinkedHashMap<>();
+
+    // Cancelled subscriptions whose consumers still have entries pending
+    Map<String, Subscription> retiringSubscriptions = new LinkedHashMap<>();
 
     private boolean isRunning = false;
 
     @PostConstruct
-    public void registerConsumers() {
-
-        for (int i = 0; i < consumerGroupSize; i++) {
+    public synchronized void registerConsumers() {
+        int size = Math.min(consumerGroupSize, capacity());
+        if (size < consumerGroupSize) {
+            log.warn("redis.consumer-group.size={} exceeds the {} subscriptions the platform pool can run, starting {}. "
+                    + "Use more processors, redis.consumer.mode=batch or reactive, or redis.execution.mode=virtual", consumerGroupSize, size, size);
+        }
+        for (int i = 0; i < size; i++) {
             registerSubscription();
         }
     }
@@ -56,7 +99,7 @@ public class SubscriptionManager implements SmartLifecycle {
      * Runs every 10 seconds.
      */
     @Scheduled(fixedRate = SUBSCRIPTION_CHECK_RATE_MS)
-    public void checkSubscriptionActivity() {
+    public synchronized void checkSubscriptionActivity() {
         Set<String> inactiveSubs = new HashSet<>();
         activeSubscriptions.forEach((id, subscription) -> {
             if (!subscription.isActive()) {
@@ -65,18 +108,109 @@ public class SubscriptionManager implements SmartLifecycle {
         });
         for (String inactiveSub : inactiveSubs) {
             activeSubscriptions.remove(inactiveSub);
-            redisTemplate.opsForList().remove(activeSubscriptionKey, 1, inactiveSub);
+            transport.unregisterConsumer(activeSubscriptionKey, inactiveSub);
             registerSubscription();
         }
     }
 
+    public synchronized int size() {
+        return activeSubscriptions.size();
+    }
+
+    /**
+     * @return how many subscriptions this instance can run at once. Record subscriptions poll on the platform pool
+     * and hold one of its threads each. Batch subscriptions have a thread of their own, reactive ones need none,
+     * and virtual threads are not limited
+     */
+    public int capacity() {
+        boolean holdsThread = CONSUMER_MODE_RECORD.equals(consumerMode);
+        return holdsThread && EXECUTION_MODE_PLATFORM.equals(executionMode) ? AppConfig.platformPoolSize() : Integer.MAX_VALUE;
+    }
+
+    public synchronized void addSubscription() {
+        registerSubscription();
+    }
+
+    /**
+     * Cancels the newest subscription, it stops reading new entries.
+     * Its consumer stays in the group until {@link #drainRetired()} processed what it left pending.
+     */
+    public synchronized void retireSubscription() {
+        Iterator<Map.Entry<String, Subscription>> iterator = activeSubscriptions.entrySet().iterator();
+        Map.Entry<String, Subscription> newest = null;
+        while (iterator.hasNext()) {
+            newest = iterator.next();
+        }
+        if (newest == null) return;
+
+        activeSubscriptions.remove(newest.getKey());
+        newest.getValue().cancel();
+        retiringSubscriptions.put(newest.getKey(), newest.getValue());
+        assignShards();
+    }
+
+    /**
+     * Drains the pending entries of retired subscriptions and removes their consumers from the group once done.
+     * Only entries delivered at least two poll timeouts ago are taken over, so a batch the subscription
+     * was still processing when it was cancelled is acknowledged by the subscription itself.
+     */
+    public synchronized void drainRetired() {
+        Duration minIdle = Duration.ofMillis(pollTimeoutMs * 2L);
+        Iterator<Map.Entry<String, Subscription>> iterator = retiringSubscriptions.entrySet().iterator();
+        while (iterator.hasNext()) {
+            String consumerName = iterator.next().getKey();
+            long pending = pendingReclaimer.drain(consumerName, minIdle);
+            if (pending > 0) {
+                log.info("Draining retired consumer {}, {} entries pending", consumerName, pending);
+                continue;
+            }
+            for (String shard : StreamShards.keys(streamKey, streamShards)) {
+                transport.deleteConsumer(shard, consumerGroupName, consumerName);
+            }
+            transport.unregisterConsumer(activeSubscriptionKey, consumerName);
+            iterator.remove();
+            log.info("Retired consumer {}", consumerName);
+        }
+    }
+
     /**
      * Registers a new consumer subscription and stores it both in memory and Redis.
+     * Nothing is started once the {@link #capacity()} is reached, the subscription would never get a thread.
      */
     private void registerSubscription() {
+        if (activeSubscriptions.size() >= capacity()) {
+            log.warn("Not adding a subscription, {} is all the platform pool can run", capacity());
+            return;
+        }
         var subscription = context.getBean(SUBSCRIPTION_BEAN_NAME, AppConfig.ConsumerSubscription.class);
         activeSubscriptions.put(subscription.id(), subscription.subscription());
-        redisTemplate.opsForList().rightPush(activeSubscriptionKey, subscription.id());
+        transport.registerConsumer(activeSubscriptionKey, subscription.id());
+        assignShards();
+    }
+
+    /**
+     * Spreads the shards over the active containers in registration order.
+     * With fewer containers than shards container i reads every shard s with s % containers == i,
+     * otherwise container i reads shard i % shards and some shards get several readers.
+     */
+    void assignShards() {
+        if (streamShards <= 1) return;
+        List<String> shards = StreamShards.keys(streamKey, streamShards);
+        List<BatchStreamContainer> containers = activeSubscriptions.values().stream()
+                .filter(BatchStreamContainer.class::isInstance)
+                .map(BatchStreamContainer.class::cast)
+                .toList();
+        for (int i = 0; i < containers.size(); i++) {
+            List<String> assigned = new ArrayList<>();
+            if (containers.size() < shards.size()) {
+                for (int shard = i; shard < shards.size(); shard += containers.size()) {
+                    assigned.add(shards.get(shard));
+                }
+            } else {
+                assigned.add(shards.get(i % shards.size()));
+            }
+            containers.get(i).assign(assigned);
+        }
     }
 
 
@@ -88,11 +222,15 @@ public class SubscriptionManager implements SmartLifecycle {
     }
 
     @Override
-    public void stop() {
-        for (String subscriptionId : activeSubscriptions.keySet()) {
-            redisTemplate.opsForList().remove(activeSubscriptionKey, 1, subscriptionId);
-        }
+    public synchronized void stop() {
+        activeSubscriptions.forEach((subscriptionId, subscription) -> {
+            subscription.cancel();
+            transport.unregisterConsumer(activeSubscriptionKey, subscriptionId);
+        });
         activeSubscriptions.clear();
+        retiringSubscriptions.keySet().forEach(subscriptionId ->
+                transport.unregisterConsumer(activeSubscriptionKey, subscriptionId));
+        retiringSubscriptions.clear();
 
         isRunning = false;
     }
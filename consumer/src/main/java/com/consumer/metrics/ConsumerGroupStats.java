@@ -0,0 +1,94 @@
+package com.consumer.metrics;
+
+import com.common.transport.StreamShards;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads the lag and pending entries of the consumer group with XINFO GROUPS.
+ * Redis reports the lag since 7.0, before that the undelivered entries are counted with XRANGE
+ * after the group's last-delivered-id, up to a limit given by the caller.
+ * The sample of a sharded stream is the sum over its shards.
+ * The subscriptions of every instance of the group are counted in the registry of active subscriptions.
+ */
+@Component
+@RequiredArgsConstructor
+public class ConsumerGroupStats {
+
+    private final RedisTemplate<String, String> redisTemplate;
+
+    @Value("${redis.stream.key}")
+    private String streamKey;
+
+    @Value("${redis.stream.shards}")
+    private int streamShards;
+
+    @Value("${redis.consumer-group.id}")
+    private String consumerGroupName;
+
+    @Value("${redis.active-subscription-key}")
+    private String activeSubscriptionKey;
+
+    /**
+     * @param lag entries not delivered to the group yet
+     * @param pending entries delivered and not acknowledged yet
+     */
+    public record Sample(long lag, long pending) {
+
+        public long backlog() {
+            return lag + pending;
+        }
+    }
+
+    /**
+     * @param scanLimit max undelivered entries counted when the server doesn't report the lag
+     * @return the current sample, null if the stream or the group does not exist
+     */
+    public Sample sample(long scanLimit) {
+        Sample total = null;
+        for (String shard : StreamShards.keys(streamKey, streamShards)) {
+            Sample sample = sample(shard, scanLimit);
+            if (sample != null) {
+                total = total == null ? sample : new Sample(total.lag() + sample.lag(), total.pending() + sample.pending());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return the subscriptions of every instance in the registry of active subscriptions
+     */
+    public long activeSubscriptions() {
+        Long size = redisTemplate.opsForList().size(activeSubscriptionKey);
+        return size == null ? 0 : size;
+    }
+
+    private Sample sample(String streamKey, long scanLimit) {
+        StreamInfo.XInfoGroups groups;
+        try {
+            groups = redisTemplate.opsForStream().groups(streamKey);
+        } catch (Exception e) {
+            // XINFO fails while the stream does not exist yet
+            return null;
+        }
+        StreamInfo.XInfoGroup group = groups == null ? null : groups.stream()
+                .filter(candidate -> consumerGroupName.equals(candidate.groupName()))
+                .findFirst()
+                .orElse(null);
+        if (group == null) return null;
+
+        long pending = group.pendingCount();
+        if (group.getRaw().get("lag") instanceof Number lag && lag.longValue() >= 0) {
+            return new Sample(lag.longValue(), pending);
+        }
+        var undelivered = Range.of(Range.Bound.exclusive(group.lastDeliveredId()), Range.Bound.<String>unbounded());
+        var entries = redisTemplate.opsForStream().range(streamKey, undelivered,
+                Limit.limit().count((int) Math.min(Integer.MAX_VALUE, scanLimit)));
+        return new Sample(entries == null ? 0 : entries.size(), pending);
+    }
+}
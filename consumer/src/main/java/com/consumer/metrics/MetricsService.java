@@ -1,66 +1,100 @@
 package com.consumer.metrics;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
+import static com.consumer.config.Constants.GROUP_LAG_METRIC;
+import static com.consumer.config.Constants.GROUP_PENDING_METRIC;
 import static com.consumer.config.Constants.METRICS_RATE_MS;
+import static com.consumer.config.Constants.PROCESSED_METRIC;
 
 /**
- * Tracks and reports throughput metrics based on the Redis output stream size.
- * Logs periodic updates and calculates an average throughput at shutdown.
+ * Reports the throughput of this instance from the processed counters of its consumers
+ * and publishes the lag and pending entries of the consumer group as gauges.
+ * Every meter is exposed on /actuator/prometheus.
+ * Logs periodic updates and the average throughput at shutdown.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class MetricsService {
 
-    private final RedisTemplate<String, String> redisTemplate;
+    private final MeterRegistry meterRegistry;
+    private final ConsumerGroupStats consumerGroupStats;
 
-    // Stores deltas of processed message counts between polling intervals
-    private final List<Long> processed = new ArrayList<>();
+    @Value("${redis.stream.key}")
+    private String streamKey;
 
-    @Value("${redis.output.stream.key}")
-    private String processedStreamKey;
+    @Value("${redis.consumer-group.id}")
+    private String consumerGroupName;
+
+    @Value("${redis.metrics.lag-scan-limit}")
+    private long lagScanLimit;
+
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicLong pending = new AtomicLong();
 
     private long lastCount = 0;
+    // Sum and number of the intervals that processed anything
+    private long activeTotal = 0;
+    private long activeIntervals = 0;
+
+    @PostConstruct
+    public void init() {
+        Tags tags = Tags.of("stream", streamKey, "group", consumerGroupName);
+        meterRegistry.gauge(GROUP_LAG_METRIC, tags, lag);
+        meterRegistry.gauge(GROUP_PENDING_METRIC, tags, pending);
+    }
 
     /**
-     * Scheduled task to report throughput by polling the size of the output stream.
+     * Scheduled task to report the throughput and sample the group.
      * Runs every METRICS_RATE_MS milliseconds.
      */
     @Scheduled(fixedRate = METRICS_RATE_MS)
     public void reportThroughput() {
-        Long currentCount = redisTemplate.opsForStream().size(processedStreamKey);
-
-        if (currentCount == null) {
-            log.warn("Could not read stream length for '{}'", processedStreamKey);
-            return;
-        }
-
+        long currentCount = processedCount();
         long delta = currentCount - lastCount;
-        log.info("Processed {} new messages in last 3 seconds (total: {})", delta, currentCount);
         lastCount = currentCount;
-
         if (delta != 0) {
-            processed.add(delta);
+            activeTotal += delta;
+            activeIntervals++;
+        }
+
+        try {
+            ConsumerGroupStats.Sample sample = consumerGroupStats.sample(lagScanLimit);
+            if (sample != null) {
+                lag.set(sample.lag());
+                pending.set(sample.pending());
+            }
+        } catch (Exception e) {
+            log.warn("Could not read consumer group '{}': {}", consumerGroupName, e.getMessage());
         }
+        log.info("Processed {} new messages in last 3 seconds (total: {}, lag: {}, pending: {})",
+                delta, currentCount, lag.get(), pending.get());
+    }
+
+    private long processedCount() {
+        return (long) meterRegistry.find(PROCESSED_METRIC).counters().stream()
+                .mapToDouble(Counter::count)
+                .sum();
     }
 
     /**
-     * Calculates and logs the average throughput across the lifetime of the service.
+     * Calculates and logs the average throughput of the intervals that processed messages.
      * Called automatically before shutdown.
      */
     @PreDestroy
     public void calculateAvrg() {
-        var avrg = processed.stream().reduce(0L, Long::sum) / processed.size();
-        log.info("Average: {}", avrg);
+        log.info("Average: {}", activeIntervals == 0 ? 0 : activeTotal / activeIntervals);
     }
 }
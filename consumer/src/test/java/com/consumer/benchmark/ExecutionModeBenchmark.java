@@ -0,0 +1,143 @@
+package com.consumer.benchmark;
+
+import com.common.transport.RedisTransport;
+import com.consumer.listener.StreamConsumer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.stream.StreamMessageListenerContainer;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the execution modes of the record consumer (redis.execution.mode) against a local Redis.
+ * platform - a listener container per subscription on a fixed pool of twice the available processors
+ * virtual - one listener container for all subscriptions on virtual threads, needs Java 21
+ * Pre-fills a stream, drains it with the given number of subscriptions and prints the peak thread count,
+ * the used heap, the number of subscriptions that got records and the throughput.
+ * java -cp consumer/target/test-classes:consumer/target/classes:<classpath> com.consumer.benchmark.ExecutionModeBenchmark virtual 256 200000
+ */
+public class ExecutionModeBenchmark {
+
+    private static final String INPUT = "benchmark:published";
+    private static final String OUTPUT = "benchmark:processed";
+    private static final String GROUP = "benchmark-group";
+
+    public static void main(String[] args) throws InterruptedException {
+        String mode = args.length > 0 ? args[0] : "platform";
+        int subscriptions = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int messages = args.length > 2 ? Integer.parseInt(args[2]) : 100_000;
+
+        var connectionFactory = new LettuceConnectionFactory(
+                System.getProperty("redis.host", "localhost"), Integer.getInteger("redis.port", 6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        var redisTemplate = new StringRedisTemplate(connectionFactory);
+        prefill(redisTemplate, messages);
+
+        Executor executor = executor(mode);
+        var threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        List<StreamMessageListenerContainer<String, MapRecord<String, String, byte[]>>> containers = new ArrayList<>();
+        List<StreamConsumer> consumers = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < subscriptions; i++) {
+            if (containers.isEmpty() || !"virtual".equals(mode)) {
+                containers.add(container(connectionFactory, executor));
+            }
+            var streamConsumer = new StreamConsumer(new RedisTransport(redisTemplate), new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(streamConsumer, "outputStreamKey", OUTPUT);
+            consumers.add(streamConsumer);
+            containers.get(containers.size() - 1).receiveAutoAck(Consumer.from(GROUP, streamConsumer.getConsumerId()),
+                    StreamOffset.create(INPUT, ReadOffset.lastConsumed()), streamConsumer);
+        }
+        containers.forEach(StreamMessageListenerContainer::start);
+
+        long deadline = System.nanoTime() + Duration.ofMinutes(2).toNanos();
+        long processed = 0;
+        while (processed < messages && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            processed = redisTemplate.opsForStream().size(OUTPUT);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+        long members = redisTemplate.opsForStream().consumers(INPUT, GROUP).stream()
+                .filter(consumer -> consumers.stream().anyMatch(c -> c.getConsumerId().equals(consumer.consumerName())))
+                .count();
+
+        System.out.printf("%-8s subscriptions: %4d  containers: %4d  peak threads: %4d  heap MB: %4d  active members: %4d  "
+                        + "processed: %d in %.1f s (%.0f msg/s)%n",
+                mode, subscriptions, containers.size(), threads.getPeakThreadCount(), heapMb, members,
+                processed, seconds, processed / seconds);
+
+        containers.forEach(StreamMessageListenerContainer::stop);
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdown();
+            executorService.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        connectionFactory.destroy();
+    }
+
+    // Same executors as AppConfig.executorService()
+    private static Executor executor(String mode) {
+        if ("virtual".equals(mode)) {
+            if (Runtime.version().feature() < 21) {
+                throw new IllegalStateException("virtual mode needs a Java 21 runtime, running on Java " + Runtime.version());
+            }
+            var executor = new SimpleAsyncTaskExecutor("consumer-");
+            executor.setVirtualThreads(true);
+            return executor;
+        }
+        return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors() * 2);
+    }
+
+    private static StreamMessageListenerContainer<String, MapRecord<String, String, byte[]>> container(
+            LettuceConnectionFactory connectionFactory, Executor executor) {
+        var options = StreamMessageListenerContainer
+                .StreamMessageListenerContainerOptions.builder()
+                .pollTimeout(Duration.ofMillis(100))
+                .<String, byte[]>hashValueSerializer(RedisSerializer.byteArray())
+                .executor(executor)
+                .build();
+        return StreamMessageListenerContainer.create(connectionFactory, options);
+    }
+
+    private static void prefill(StringRedisTemplate redisTemplate, int messages) {
+        redisTemplate.delete(List.of(INPUT, OUTPUT));
+        for (int offset = 0; offset < messages; offset += 1000) {
+            int count = Math.min(1000, messages - offset);
+            redisTemplate.executePipelined(new SessionCallback<>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    var stringOperations = (RedisOperations<String, String>) operations;
+                    for (int i = 0; i < count; i++) {
+                        String body = "{\"message_id\":\"" + UUID.randomUUID() + "\"}";
+                        stringOperations.opsForStream().add(StreamRecords.mapBacked(Map.of("body", body)).withStreamKey(INPUT));
+                    }
+                    return null;
+                }
+            });
+        }
+        redisTemplate.opsForStream().createGroup(INPUT, ReadOffset.from("0"), GROUP);
+    }
+}
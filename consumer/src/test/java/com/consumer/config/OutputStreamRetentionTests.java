@@ -0,0 +1,76 @@
+package com.consumer.config;
+
+import com.common.retention.StreamRetentionService;
+import com.consumer.util.RedisTestSupport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputStreamRetentionTests extends RedisTestSupport {
+
+    private static final long MAX_AGE_MS = 60_000;
+
+    @Test
+    void testOutputIsTrimmedToMaxAge_whenNoGroupReadsIt() {
+        String output = "output-retention-unread";
+        long now = System.currentTimeMillis();
+        addEntries(output, now - 2 * MAX_AGE_MS, 500);
+        addEntries(output, now, 100);
+        var meterRegistry = new SimpleMeterRegistry();
+        var retention = streamRetentionService(output, meterRegistry);
+
+        retention.trim();
+
+        // MINID ~ only removes whole macro nodes, so up to one node before the cutoff remains
+        long length = redisTemplate.opsForStream().size(output);
+        assertTrue(length >= 100 && length < 100 + 100, "length " + length);
+        assertEquals(600 - length, meterRegistry.get(StreamRetentionService.TRIMMED_METRIC)
+                .tag(StreamRetentionService.STREAM_TAG, output).functionCounter().count());
+    }
+
+    @Test
+    void testLaggingDownstreamGroupHoldsTheCutoff_untilItIsGone() {
+        String output = "output-retention-downstream";
+        List<RecordId> old = addEntries(output, System.currentTimeMillis() - 2 * MAX_AGE_MS, 500);
+        // A downstream group that has only read the first 200 entries
+        redisTemplate.opsForStream().createGroup(output, ReadOffset.from(old.get(199)), "downstream");
+        var meterRegistry = new SimpleMeterRegistry();
+        var retention = streamRetentionService(output, meterRegistry);
+
+        retention.trim();
+
+        assertEquals(old.get(200), retention.getCutoff());
+        assertEquals(1, meterRegistry.get(StreamRetentionService.LAGGING_GROUPS_METRIC)
+                .tag(StreamRetentionService.STREAM_TAG, output).gauge().value());
+
+        redisTemplate.opsForStream().destroyGroup(output, "downstream");
+        retention.trim();
+
+        assertTrue(redisTemplate.opsForStream().size(output) < 300);
+        assertEquals(0, meterRegistry.get(StreamRetentionService.LAGGING_GROUPS_METRIC)
+                .tag(StreamRetentionService.STREAM_TAG, output).gauge().value());
+    }
+
+    // Output retention limited by age only
+    private static StreamRetentionService streamRetentionService(String output, SimpleMeterRegistry meterRegistry) {
+        return new StreamRetentionService(redisTemplate, List.of(output), 0, MAX_AGE_MS, 10_000, meterRegistry);
+    }
+
+    private static List<RecordId> addEntries(String stream, long timestamp, int count) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> redisTemplate.opsForStream().add(StreamRecords.newRecord()
+                        .in(stream)
+                        .withId(RecordId.of(timestamp, i))
+                        .ofMap(Map.of("body", "message " + i))))
+                .toList();
+    }
+}
@@ -0,0 +1,88 @@
+package com.consumer.listener;
+
+import com.common.transport.RedisTransport;
+import com.consumer.util.RedisTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BatchStreamContainerTests extends RedisTestSupport {
+
+    private static final String INPUT = "batch-input";
+    private static final String OUTPUT = "batch-output";
+    private static final String GROUP = "batch-group";
+
+    @Test
+    void testBatchesAreWrittenAndAcknowledged() {
+        for (int i = 0; i < 1000; i++) {
+            redisTemplate.opsForStream().add(INPUT, Map.of("body", "message " + i));
+        }
+        redisTemplate.opsForStream().createGroup(INPUT, ReadOffset.from("0"), GROUP);
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        BatchStreamListener listener = records -> {
+            batchSizes.add(records.size());
+            return records.stream()
+                    .map(record -> StreamRecords.mapBacked(Map.of("body", new String(record.getValue().get("body"))))
+                            .withStreamKey(OUTPUT))
+                    .toList();
+        };
+        var container = new BatchStreamContainer(new RedisTransport(redisTemplate), Consumer.from(GROUP, "consumer"), List.of(INPUT),
+                300, Duration.ofMillis(100), listener);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        container.start(executor);
+        await().atMost(Duration.ofSeconds(10)).until(() -> redisTemplate.opsForStream().size(OUTPUT) == 1000);
+        container.cancel();
+        executor.shutdown();
+
+        assertEquals(0, redisTemplate.opsForStream().pending(INPUT, GROUP).getTotalPendingMessages());
+        assertEquals(List.of(300, 300, 300, 100), batchSizes);
+        assertFalse(container.isActive());
+    }
+
+    @Test
+    void testFailingRecordStaysPending_whileTheRestOfItsBatchIsAcknowledged() {
+        String input = "batch-poison-input";
+        String output = "batch-poison-output";
+        RecordId poison = null;
+        for (int i = 0; i < 10; i++) {
+            RecordId id = redisTemplate.opsForStream().add(input, Map.of("body", "message " + i));
+            if (i == 3) poison = id;
+        }
+        redisTemplate.opsForStream().createGroup(input, ReadOffset.from("0"), GROUP);
+        BatchStreamListener listener = records -> records.stream()
+                .map(record -> {
+                    String body = new String(record.getValue().get("body"));
+                    if (body.equals("message 3")) throw new IllegalStateException("cannot process " + body);
+                    return StreamRecords.mapBacked(Map.of("body", body)).withStreamKey(output);
+                })
+                .toList();
+        var container = new BatchStreamContainer(new RedisTransport(redisTemplate), Consumer.from(GROUP, "consumer"), List.of(input),
+                100, Duration.ofMillis(100), listener);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+
+        container.start(executor);
+        await().atMost(Duration.ofSeconds(10)).until(() -> redisTemplate.opsForStream().size(output) == 9);
+        container.cancel();
+        executor.shutdown();
+
+        PendingMessages pending = redisTemplate.opsForStream().pending(input, GROUP, Range.unbounded(), 10);
+        assertEquals(1, pending.size());
+        assertEquals(poison, pending.get(0).getId());
+    }
+}
@@ -0,0 +1,129 @@
+package com.consumer.listener;
+
+import com.common.transport.InMemoryTransport;
+import com.common.transport.StreamShards;
+import com.consumer.config.AppConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.consumer.config.Constants.SUBSCRIPTION_BEAN_NAME;
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Runs the subscriptions of the {@link SubscriptionManager} on an {@link InMemoryTransport}, without Redis,
+ * on a single stream and on a sharded one.
+ */
+class InMemoryConsumerGroupTests {
+
+    private static final String INPUT = "messages:published";
+    private static final String OUTPUT = "messages:processed";
+    private static final String GROUP = "group";
+    private static final String REGISTRY = "active-subscriptions";
+
+    @Test
+    void testSubscriptionsProcessAndAcknowledgeEveryEntry() {
+        var transport = new InMemoryTransport();
+        transport.createGroup(INPUT, GROUP);
+        transport.append(entries(INPUT, 1000));
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        var context = subscriptions(transport, List.of(INPUT), executor);
+        // Retiring needs the pending reclaimer, which runs on Redis only
+        var subscriptionManager = subscriptionManager(context, transport, 3, 1);
+        subscriptionManager.registerConsumers();
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> transport.appended(OUTPUT) == 1000);
+        assertEquals(0, transport.pending(INPUT, GROUP));
+        assertEquals(3, transport.registeredConsumers(REGISTRY).size());
+
+        subscriptionManager.stop();
+        assertEquals(0, transport.registeredConsumers(REGISTRY).size());
+        executor.shutdownNow();
+        context.close();
+    }
+
+    @Test
+    void testShardsAreSpreadOverTheSubscriptions() {
+        var transport = new InMemoryTransport();
+        List<String> shards = StreamShards.keys(INPUT, 5);
+        for (String shard : shards) {
+            transport.createGroup(shard, GROUP);
+            transport.append(entries(shard, 200));
+        }
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+        var context = subscriptions(transport, shards, executor);
+        var subscriptionManager = subscriptionManager(context, transport, 2, shards.size());
+        subscriptionManager.registerConsumers();
+
+        await().atMost(Duration.ofSeconds(10)).until(() -> transport.appended(OUTPUT) == 1000);
+        for (String shard : shards) {
+            assertEquals(0, transport.pending(shard, GROUP));
+        }
+        List<BatchStreamContainer> containers = subscriptionManager.activeSubscriptions.values().stream()
+                .map(BatchStreamContainer.class::cast)
+                .toList();
+        assertEquals(List.of(shards.get(0), shards.get(2), shards.get(4)), containers.get(0).getStreamKeys());
+        assertEquals(List.of(shards.get(1), shards.get(3)), containers.get(1).getStreamKeys());
+
+        // More subscriptions than shards, every one reads a single shard
+        for (int i = 0; i < 4; i++) {
+            subscriptionManager.addSubscription();
+        }
+        subscriptionManager.activeSubscriptions.values().forEach(subscription ->
+                assertEquals(1, ((BatchStreamContainer) subscription).getStreamKeys().size()));
+
+        subscriptionManager.stop();
+        executor.shutdownNow();
+        context.close();
+    }
+
+    private static GenericApplicationContext subscriptions(InMemoryTransport transport, List<String> streamKeys,
+                                                           ExecutorService executor) {
+        var context = new GenericApplicationContext();
+        context.registerBean(SUBSCRIPTION_BEAN_NAME, AppConfig.ConsumerSubscription.class, () -> {
+            var streamConsumer = new StreamConsumer(transport, new SimpleMeterRegistry());
+            ReflectionTestUtils.setField(streamConsumer, "outputStreamKey", OUTPUT);
+            var container = new BatchStreamContainer(transport, Consumer.from(GROUP, streamConsumer.getConsumerId()),
+                    streamKeys, 100, Duration.ofMillis(100), streamConsumer);
+            container.start(executor);
+            return new AppConfig.ConsumerSubscription(streamConsumer.getConsumerId(), container);
+        }, definition -> definition.setScope(ConfigurableBeanFactory.SCOPE_PROTOTYPE));
+        context.refresh();
+        return context;
+    }
+
+    private static SubscriptionManager subscriptionManager(GenericApplicationContext context, InMemoryTransport transport,
+                                                           int size, int shards) {
+        var subscriptionManager = new SubscriptionManager(context, transport, null);
+        ReflectionTestUtils.setField(subscriptionManager, "consumerGroupSize", size);
+        ReflectionTestUtils.setField(subscriptionManager, "activeSubscriptionKey", REGISTRY);
+        ReflectionTestUtils.setField(subscriptionManager, "streamKey", INPUT);
+        ReflectionTestUtils.setField(subscriptionManager, "streamShards", shards);
+        return subscriptionManager;
+    }
+
+    private static List<MapRecord<byte[], byte[], byte[]>> entries(String stream, int count) {
+        List<MapRecord<byte[], byte[], byte[]>> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] body = ("{\"message_id\":\"" + i + "\"}").getBytes(StandardCharsets.UTF_8);
+            entries.add(MapRecord.create(stream.getBytes(StandardCharsets.UTF_8),
+                    Map.of("body".getBytes(StandardCharsets.UTF_8), body)));
+        }
+        return entries;
+    }
+}
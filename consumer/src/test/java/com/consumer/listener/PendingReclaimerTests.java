@@ -0,0 +1,153 @@
+package com.consumer.listener;
+
+import com.common.transport.RedisTransport;
+import com.consumer.util.RedisTestSupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamInfo;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.consumer.config.Constants.DEAD_LETTERED_METRIC;
+import static com.consumer.config.Constants.PROCESSED_METRIC;
+import static com.consumer.config.Constants.RECOVERY_METRIC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PendingReclaimerTests extends RedisTestSupport {
+
+    private static final String INPUT = "reclaim-input";
+    private static final String OUTPUT = "reclaim-output";
+    private static final String GROUP = "reclaim-group";
+
+    @Test
+    void testEntriesOfDeadConsumerAreProcessedAndConsumerIsRemoved() {
+        for (int i = 0; i < 1000; i++) {
+            redisTemplate.opsForStream().add(INPUT, Map.of("body", "{\"message_id\":\"" + i + "\"}"));
+        }
+        redisTemplate.opsForStream().createGroup(INPUT, ReadOffset.from("0"), GROUP);
+        // Reads everything and dies before acknowledging
+        readGroup(INPUT, "dead-consumer", 1000);
+        // A registered consumer that found nothing left to read
+        redisTemplate.opsForList().rightPush("reclaim-subscriptions", "live-consumer");
+        redisTemplate.execute(new DefaultRedisScript<>("return redis.call('XGROUP', 'CREATECONSUMER', KEYS[1], ARGV[1], ARGV[2])",
+                Long.class), List.of(INPUT), GROUP, "live-consumer");
+        var meterRegistry = new SimpleMeterRegistry();
+        var reclaimer = pendingReclaimer(INPUT, OUTPUT, meterRegistry);
+
+        reclaimer.reclaim();
+
+        assertEquals(1000, redisTemplate.opsForStream().size(OUTPUT));
+        assertEquals(0, redisTemplate.opsForStream().pending(INPUT, GROUP).getTotalPendingMessages());
+        assertEquals(1000, reclaimer.getReclaimedCount());
+        assertEquals(1000, meterRegistry.get(PROCESSED_METRIC).counter().count());
+        assertEquals(1, reclaimer.getRemovedConsumerCount());
+        assertTrue(redisTemplate.opsForStream().consumers(INPUT, GROUP).stream()
+                .map(StreamInfo.XInfoConsumer::consumerName)
+                .noneMatch("dead-consumer"::equals));
+        assertTrue(redisTemplate.opsForStream().consumers(INPUT, GROUP).stream()
+                .map(StreamInfo.XInfoConsumer::consumerName)
+                .anyMatch("live-consumer"::equals));
+        assertTrue(reclaimer.getLastRecoveryMs() >= 0);
+        assertEquals(1, meterRegistry.get(RECOVERY_METRIC).timer().count());
+        reclaimer.shutdown();
+    }
+
+    @Test
+    void testEntriesDeliveredMaxDeliveriesTimesAreDeadLettered() {
+        String input = INPUT + ":poison";
+        String deadLetter = INPUT + ":dead-letter";
+        List<RecordId> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(redisTemplate.opsForStream().add(input, Map.of("body", "{\"message_id\":\"" + i + "\"}")));
+        }
+        redisTemplate.opsForStream().createGroup(input, ReadOffset.from("0"), GROUP);
+        readGroup(input, "crashing-consumer", 10);
+        var meterRegistry = new SimpleMeterRegistry();
+        var reclaimer = pendingReclaimer(input, OUTPUT + ":poison", meterRegistry);
+        ReflectionTestUtils.setField(reclaimer, "maxDeliveries", 3L);
+        ReflectionTestUtils.setField(reclaimer, "deadLetterStreamKey", deadLetter);
+        // The first 4 entries crashed two more consumers, they were delivered 3 times
+        for (String consumer : List.of("second-consumer", "third-consumer")) {
+            redisTemplate.opsForStream().claim(input, GROUP, consumer, Duration.ZERO,
+                    ids.subList(0, 4).toArray(RecordId[]::new));
+        }
+
+        reclaimer.reclaim();
+
+        assertEquals(4, redisTemplate.opsForStream().size(deadLetter));
+        assertEquals(4, reclaimer.getDeadLetteredCount());
+        assertEquals(4, meterRegistry.get(DEAD_LETTERED_METRIC).counter().count());
+        assertEquals(6, redisTemplate.opsForStream().size(OUTPUT + ":poison"));
+        assertEquals(0, redisTemplate.opsForStream().pending(input, GROUP).getTotalPendingMessages());
+        MapRecord<String, Object, Object> first = redisTemplate.opsForStream().range(deadLetter, Range.unbounded()).get(0);
+        assertEquals("{\"message_id\":\"0\"}", first.getValue().get("body"));
+        assertEquals(input, first.getValue().get("source_stream"));
+        assertEquals("3", first.getValue().get("deliveries"));
+        reclaimer.shutdown();
+    }
+
+    @Test
+    void testRetiredConsumerIsDrained() {
+        String input = INPUT + ":drain";
+        for (int i = 0; i < 500; i++) {
+            redisTemplate.opsForStream().add(input, Map.of("body", "{\"message_id\":\"" + i + "\"}"));
+        }
+        redisTemplate.opsForStream().createGroup(input, ReadOffset.from("0"), GROUP);
+        readGroup(input, "retired-consumer", 500);
+        var reclaimer = pendingReclaimer(input, OUTPUT + ":drain", new SimpleMeterRegistry());
+
+        // Not idle long enough yet, one page of the batch size per call
+        assertEquals(300, reclaimer.drain("retired-consumer", Duration.ofMinutes(1)));
+        assertEquals(0, redisTemplate.opsForStream().size(OUTPUT + ":drain"));
+        assertEquals(300, reclaimer.drain("retired-consumer", Duration.ZERO));
+        assertEquals(200, reclaimer.drain("retired-consumer", Duration.ZERO));
+
+        assertEquals(0, reclaimer.drain("retired-consumer", Duration.ZERO));
+        assertEquals(500, redisTemplate.opsForStream().size(OUTPUT + ":drain"));
+        assertEquals(0, redisTemplate.opsForStream().pending(input, GROUP).getTotalPendingMessages());
+        reclaimer.shutdown();
+    }
+
+    // XREADGROUP as a raw command, the typed read takes generic varargs
+    private static void readGroup(String stream, String consumer, int count) {
+        redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("XREADGROUP",
+                bytes("GROUP"), bytes(GROUP), bytes(consumer), bytes("COUNT"), bytes(String.valueOf(count)),
+                bytes("STREAMS"), bytes(stream), bytes(">")));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private PendingReclaimer pendingReclaimer(String input, String output, MeterRegistry meterRegistry) {
+        var transport = new RedisTransport(redisTemplate);
+        var streamConsumer = new StreamConsumer(transport, meterRegistry);
+        ReflectionTestUtils.setField(streamConsumer, "outputStreamKey", output);
+        var reclaimer = new PendingReclaimer(redisTemplate, transport, streamConsumer, meterRegistry);
+        ReflectionTestUtils.setField(reclaimer, "enabled", true);
+        ReflectionTestUtils.setField(reclaimer, "streamKey", input);
+        ReflectionTestUtils.setField(reclaimer, "consumerGroupName", GROUP);
+        ReflectionTestUtils.setField(reclaimer, "activeSubscriptionKey", "reclaim-subscriptions");
+        ReflectionTestUtils.setField(reclaimer, "batchSize", 300);
+        ReflectionTestUtils.setField(reclaimer, "pollTimeoutMs", 100);
+        ReflectionTestUtils.setField(reclaimer, "minIdleMs", 0L);
+        ReflectionTestUtils.setField(reclaimer, "consumerIdleMs", 0L);
+        ReflectionTestUtils.setField(reclaimer, "parallelism", 4);
+        ReflectionTestUtils.setField(reclaimer, "maxDeliveries", 0L);
+        reclaimer.init();
+        return reclaimer;
+    }
+}
@@ -0,0 +1,63 @@
+package com.consumer.listener;
+
+import com.consumer.util.RedisTestSupport;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveStreamContainerTests extends RedisTestSupport {
+
+    private static final String INPUT = "reactive-input";
+    private static final String OUTPUT = "reactive-output";
+    private static final String GROUP = "reactive-group";
+
+    @Test
+    void testAllMembersShareTheWorkAndEverythingIsAcknowledged() {
+        for (int i = 0; i < 1000; i++) {
+            redisTemplate.opsForStream().add(INPUT, Map.of("body", "message " + i));
+        }
+        redisTemplate.opsForStream().createGroup(INPUT, ReadOffset.from("0"), GROUP);
+        var readTemplate = new ReactiveRedisTemplate<>(connectionFactory,
+                RedisSerializationContext.<String, String>newSerializationContext(RedisSerializer.string())
+                        .hashValue(RedisSerializer.byteArray())
+                        .build());
+        var writeTemplate = new ReactiveStringRedisTemplate(connectionFactory);
+        AtomicInteger maxBatch = new AtomicInteger();
+        BatchStreamListener listener = records -> {
+            maxBatch.accumulateAndGet(records.size(), Math::max);
+            return records.stream()
+                    .map(record -> StreamRecords.mapBacked(Map.of("body", new String(record.getValue().get("body"))))
+                            .withStreamKey(OUTPUT))
+                    .toList();
+        };
+        List<ReactiveStreamContainer> containers = List.of(
+                new ReactiveStreamContainer(readTemplate, writeTemplate, Consumer.from(GROUP, "first"), INPUT,
+                        50, 2, Duration.ofMillis(100), listener),
+                new ReactiveStreamContainer(readTemplate, writeTemplate, Consumer.from(GROUP, "second"), INPUT,
+                        50, 2, Duration.ofMillis(100), listener));
+
+        containers.forEach(ReactiveStreamContainer::start);
+        await().atMost(Duration.ofSeconds(10)).until(() -> redisTemplate.opsForStream().size(OUTPUT) == 1000);
+        containers.forEach(ReactiveStreamContainer::cancel);
+
+        assertEquals(0, redisTemplate.opsForStream().pending(INPUT, GROUP).getTotalPendingMessages());
+        assertTrue(maxBatch.get() <= 50);
+        assertEquals(2, redisTemplate.opsForStream().consumers(INPUT, GROUP).size());
+        assertFalse(containers.get(0).isActive());
+    }
+}
@@ -0,0 +1,50 @@
+package com.consumer.listener;
+
+import com.common.codec.Envelope;
+import com.common.metrics.PipelineLatency;
+import com.common.transport.InMemoryTransport;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.consumer.config.Constants.SKIPPED_METRIC;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamConsumerTest {
+
+    @Test
+    void testOnlyThePayloadFieldsAreDecoded() {
+        var meterRegistry = new SimpleMeterRegistry();
+        var streamConsumer = new StreamConsumer(new InMemoryTransport(), meterRegistry);
+        ReflectionTestUtils.setField(streamConsumer, "outputStreamKey", "messages:processed");
+
+        Map<String, byte[]> single = new LinkedHashMap<>();
+        single.put("body", bytes("{\"message_id\":\"1\"}"));
+        single.put(PipelineLatency.INGRESS_FIELD_NAME, bytes(String.valueOf(System.currentTimeMillis())));
+        // Decodable, but not a payload
+        single.put("trace", bytes("{\"message_id\":\"trace\"}"));
+        List<byte[]> packed = List.of(bytes("{\"message_id\":\"2\"}"), bytes("{\"message_id\":\"3\"}"));
+        Map<String, byte[]> envelope = Map.of(Envelope.FIELD_NAME, Envelope.pack(packed, 0, packed.size()));
+        Map<String, byte[]> init = Map.of("init", bytes("{}"));
+
+        var outputs = streamConsumer.onMessages(List.of(record(single), record(envelope), record(init)));
+
+        assertEquals(List.of("1", "2", "3"), outputs.stream().map(output -> output.getValue().get("message_id")).toList());
+        assertEquals(1, meterRegistry.get(SKIPPED_METRIC).counter().count());
+    }
+
+    private static MapRecord<String, String, byte[]> record(Map<String, byte[]> fields) {
+        return MapRecord.create("messages:published", fields).withId(RecordId.of(System.currentTimeMillis(), 0));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
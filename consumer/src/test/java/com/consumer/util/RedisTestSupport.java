@@ -0,0 +1,34 @@
+package com.consumer.util;
+
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+/**
+ * Base for tests that run against a Redis container of their own, started once per test class.
+ */
+public abstract class RedisTestSupport {
+
+    private static RedisContainer redisContainer;
+    protected static LettuceConnectionFactory connectionFactory;
+    protected static StringRedisTemplate redisTemplate;
+
+    @BeforeAll
+    static void startRedis() {
+        redisContainer = RedisContainerFactory.create();
+        redisContainer.start();
+        connectionFactory = new LettuceConnectionFactory(redisContainer.getHost(),
+                redisContainer.getMappedPort(RedisContainerFactory.REDIS_PORT));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        connectionFactory.destroy();
+        redisContainer.stop();
+    }
+}
@@ -1,13 +1,19 @@
 package com.producer.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnection;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.listener.ChannelTopic;
 
 @Configuration
 public class AppConfig {
 
+    // The factory auto-configured from spring.data.redis, used by the RedisTemplate and the publishing threads
+    private static final String PRODUCER_CONNECTION_FACTORY = "redisConnectionFactory";
+
     @Value("${redis.topic}")
     private String messageTopicName;
 
@@ -15,4 +21,22 @@ public class AppConfig {
     ChannelTopic messageTopic() {
         return new ChannelTopic(messageTopicName);
     }
+
+    /**
+     * Pipelined commands are written to the socket once the pipeline is closed,
+     * instead of one write per command.
+     * Only applied to the connection factory the producer publishes with, any other factory keeps its flush policy.
+     */
+    @Bean
+    static BeanPostProcessor pipeliningFlushPolicy() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (PRODUCER_CONNECTION_FACTORY.equals(beanName) && bean instanceof LettuceConnectionFactory connectionFactory) {
+                    connectionFactory.setPipeliningFlushPolicy(LettuceConnection.PipeliningFlushPolicy.flushOnClose());
+                }
+                return bean;
+            }
+        };
+    }
 }
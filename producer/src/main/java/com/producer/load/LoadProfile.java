@@ -0,0 +1,57 @@
+package com.producer.load;
+
+/**
+ * Target publishing rate over the time since the run started.
+ * constant - the rate for the whole run
+ * step - ramps up to the rate in equal steps, each lasting an equal share of the run
+ * burst - the rate, multiplied by a factor for a short burst at a fixed interval
+ * The factories reject parameters that would make the rate zero or the schedule undefined.
+ */
+@FunctionalInterface
+public interface LoadProfile {
+
+    String CONSTANT = "constant";
+    String STEP = "step";
+    String BURST = "burst";
+
+    /**
+     * @return messages per second at the given time since the start of the run
+     */
+    double rate(long elapsedMs);
+
+    static LoadProfile constant(double rate) {
+        requirePositive("rate", rate);
+        return elapsedMs -> rate;
+    }
+
+    static LoadProfile step(double rate, int steps, long durationMs) {
+        requirePositive("rate", rate);
+        requirePositive("step count", steps);
+        requirePositive("duration", durationMs);
+        long stepMs = Math.max(1, durationMs / steps);
+        return elapsedMs -> rate * Math.min(steps, elapsedMs / stepMs + 1) / steps;
+    }
+
+    static LoadProfile burst(double rate, double factor, long intervalMs, long burstMs) {
+        requirePositive("rate", rate);
+        requirePositive("burst factor", factor);
+        requirePositive("burst interval", intervalMs);
+        if (burstMs < 0) {
+            throw new IllegalArgumentException("The burst duration must not be negative, got " + burstMs);
+        }
+        return elapsedMs -> elapsedMs % intervalMs < burstMs ? rate * factor : rate;
+    }
+
+    private static void requirePositive(String name, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("The " + name + " must be positive, got " + value);
+        }
+    }
+
+    private static void requirePositive(String name, double value) {
+        // Also rejects NaN
+        if (!(value > 0)) {
+            throw new IllegalArgumentException("The " + name + " must be positive, got " + value);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.producer.load;
+
+import java.util.SplittableRandom;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Writes messages of the form {"message_id":"<uuid>"} into reusable byte buffers, one per slot of a batch.
+ * The ids are random version 4 UUIDs written as hex straight into the buffer. They come from a
+ * {@link SplittableRandom} instead of {@link java.util.UUID#randomUUID()}, which goes through a SecureRandom
+ * shared by all threads. Unique enough for load tests, not for anything that needs unpredictable ids.
+ * Not thread-safe, every publishing thread has its own.
+ */
+public class MessageGenerator {
+
+    private static final byte[] PREFIX = "{\"message_id\":\"".getBytes(US_ASCII);
+    private static final byte[] SUFFIX = "\"}".getBytes(US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(US_ASCII);
+    private static final int UUID_LENGTH = 36;
+
+    public static final int MESSAGE_LENGTH = PREFIX.length + UUID_LENGTH + SUFFIX.length;
+
+    private final SplittableRandom random;
+    private final byte[][] buffers;
+
+    public MessageGenerator(int capacity) {
+        this(capacity, new SplittableRandom());
+    }
+
+    MessageGenerator(int capacity, SplittableRandom random) {
+        this.random = random;
+        this.buffers = new byte[capacity][];
+        for (int i = 0; i < capacity; i++) {
+            byte[] buffer = new byte[MESSAGE_LENGTH];
+            System.arraycopy(PREFIX, 0, buffer, 0, PREFIX.length);
+            System.arraycopy(SUFFIX, 0, buffer, MESSAGE_LENGTH - SUFFIX.length, SUFFIX.length);
+            for (int dash : new int[]{8, 13, 18, 23}) {
+                buffer[PREFIX.length + dash] = '-';
+            }
+            buffers[i] = buffer;
+        }
+    }
+
+    /**
+     * @return the buffers, the message written by {@link #next(int)} to slot i is in buffers()[i]
+     */
+    public byte[][] buffers() {
+        return buffers;
+    }
+
+    /**
+     * Writes a new message to the given slot, overwriting the previous one.
+     * The previous message must have been published already.
+     * @return the buffer of the slot
+     */
+    public byte[] next(int slot) {
+        byte[] buffer = buffers[slot];
+        // Version 4 and the IETF variant, like UUID.randomUUID()
+        long msb = random.nextLong() & ~0xF000L | 0x4000L;
+        long lsb = random.nextLong() & 0x3FFFFFFFFFFFFFFFL | 0x8000000000000000L;
+        int offset = PREFIX.length;
+        hex(buffer, offset, msb >>> 32, 8);
+        hex(buffer, offset + 9, msb >>> 16, 4);
+        hex(buffer, offset + 14, msb, 4);
+        hex(buffer, offset + 19, lsb >>> 48, 4);
+        hex(buffer, offset + 24, lsb, 12);
+        return buffer;
+    }
+
+    private static void hex(byte[] buffer, int offset, long value, int digits) {
+        for (int i = offset + digits - 1; i >= offset; i--) {
+            buffer[i] = HEX[(int) (value & 0xF)];
+            value >>>= 4;
+        }
+    }
+}
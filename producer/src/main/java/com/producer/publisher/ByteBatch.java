@@ -0,0 +1,18 @@
+package com.producer.publisher;
+
+/**
+ * Publishes batches of messages held in byte buffers the caller reuses from batch to batch.
+ * Opened by one publishing thread with {@link MessagePublisher#openByteBatch()}, it holds its own connection
+ * until closed, so the pipelines of parallel threads don't wait for each other. Not thread-safe.
+ */
+public interface ByteBatch extends AutoCloseable {
+
+    /**
+     * Publishes the first count messages in one pipeline.
+     * The messages are written to the socket before the call returns, after that their buffers can be reused.
+     */
+    void publish(byte[][] messages, int count);
+
+    @Override
+    void close();
+}
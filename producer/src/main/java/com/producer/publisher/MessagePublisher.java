@@ -5,4 +5,9 @@ import java.util.List;
 public interface MessagePublisher {
 
     void publishBatch(List<String> messages);
+
+    /**
+     * Opens a {@link ByteBatch} for the calling thread, connected before it returns.
+     */
+    ByteBatch openByteBatch();
 }
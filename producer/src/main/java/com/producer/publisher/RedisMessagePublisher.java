@@ -1,19 +1,25 @@
 package com.producer.publisher;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.ChannelTopic;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 @Component
-@RequiredArgsConstructor
 public class RedisMessagePublisher implements MessagePublisher {
 
     private final RedisTemplate<String, String> redisTemplate;
-    private final ChannelTopic topic;
+    // Encoded once instead of for every message
+    private final byte[] channel;
+
+    public RedisMessagePublisher(RedisTemplate<String, String> redisTemplate, ChannelTopic topic) {
+        this.redisTemplate = redisTemplate;
+        this.channel = topic.getTopic().getBytes(StandardCharsets.UTF_8);
+    }
 
     /**
      * Publishes a batch of messages to a Redis Pub/Sub channel using pipelining for efficiency.
@@ -23,8 +29,55 @@ public class RedisMessagePublisher implements MessagePublisher {
     public void publishBatch(List<String> messages) {
         redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
             messages.forEach(message ->
-                    connection.publish(topic.getTopic().getBytes(), message.getBytes()));
+                    connection.publish(channel, message.getBytes(StandardCharsets.UTF_8)));
             return null;
         });
     }
+
+    /**
+     * Takes a connection of its own from the connection factory and sends a PING through it,
+     * so the connection is established before the first batch.
+     */
+    @Override
+    public ByteBatch openByteBatch() {
+        RedisConnection connection = redisTemplate.getRequiredConnectionFactory().getConnection();
+        try {
+            connection.openPipeline();
+            connection.ping();
+            connection.closePipeline();
+        } catch (RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        return new RedisByteBatch(connection);
+    }
+
+    private class RedisByteBatch implements ByteBatch {
+
+        private final RedisConnection connection;
+
+        private RedisByteBatch(RedisConnection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Closing the pipeline waits for every reply, so the messages have been written by then.
+         */
+        @Override
+        public void publish(byte[][] messages, int count) {
+            connection.openPipeline();
+            try {
+                for (int i = 0; i < count; i++) {
+                    connection.publish(channel, messages[i]);
+                }
+            } finally {
+                connection.closePipeline();
+            }
+        }
+
+        @Override
+        public void close() {
+            connection.close();
+        }
+    }
 }
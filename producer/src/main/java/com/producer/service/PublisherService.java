@@ -1,73 +1,232 @@
 package com.producer.service;
 
-import com.producer.publisher.RedisMessagePublisher;
+import com.producer.load.LoadProfile;
+import com.producer.load.MessageGenerator;
+import com.producer.publisher.ByteBatch;
+import com.producer.publisher.MessagePublisher;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
-import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Periodically publishes batches of messages to Redis using the {@link RedisMessagePublisher}.
- * Message generation runs for a configured duration, with configurable throttling
- * between each batch to simulate a realistic message flow.
+ * Open-loop load generator publishing messages to Redis with the {@link MessagePublisher}.
+ * The target rate follows the {@link LoadProfile} selected with redis.load.profile and is split evenly
+ * between redis.load.threads publishing threads, each publishing through its own {@link ByteBatch}.
+ * Every message has an intended send time from the schedule, independent of how fast the previous ones went out.
+ * A thread that falls behind publishes the overdue messages right away, up to batch-size per pipeline,
+ * and the publish latency is measured from the intended send time. A stall shows up in the latency
+ * instead of lowering the offered load, so the numbers don't suffer from coordinated omission.
+ * The run starts in the background once the application is ready, or during startup with
+ * redis.load.background=false. A summary of the offered and achieved load is logged at the end.
+ * Messages are written by a {@link MessageGenerator} into buffers reused from batch to batch,
+ * so the threads don't allocate or share a random source per message.
  */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PublisherService {
 
-    private final RedisMessagePublisher publisher;
+    private final MessagePublisher publisher;
 
+    // Max messages per pipeline
     @Value("${redis.batch-size}")
     private int batchSize;
 
-    @Value("${redis.throttle-min-ms}")
-    private int throttleMinMs;
-
-    @Value("${redis.throttle-max-ms}")
-    private int throttleMaxMs;
-
     @Value("${redis.publish-duration-sec}")
     private int publishDurationSec;
 
-    /**
-     * Starts publishing batches of messages after application startup.
-     * Each batch contains randomly generated UUID-based message IDs.
-     * Publishing is throttled with a random delay between batches.
-     * Publishing continues for configurable duration
-     */
+    @Value("${redis.load.profile}")
+    private String profileName;
+
+    @Value("${redis.load.rate}")
+    private double rate;
+
+    @Value("${redis.load.threads}")
+    private int threads;
+
+    @Value("${redis.load.background}")
+    private boolean background;
+
+    @Value("${redis.load.step.count}")
+    private int stepCount;
+
+    @Value("${redis.load.burst.factor}")
+    private double burstFactor;
+
+    @Value("${redis.load.burst.interval-ms}")
+    private long burstIntervalMs;
+
+    @Value("${redis.load.burst.duration-ms}")
+    private long burstDurationMs;
+
+    private volatile boolean stopped = false;
+
+    private record Result(long published, long failed, Histogram latencyMicros) {
+    }
+
     @PostConstruct
     public void startPublishingMessages() throws InterruptedException {
+        if (!background) {
+            publishMessages();
+        }
+    }
 
-        Duration targetDuration = Duration.ofSeconds(publishDurationSec);
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (background) {
+            new Thread(() -> {
+                try {
+                    publishMessages();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "load-generator").start();
+        }
+    }
 
-        Instant start = Instant.now();
-        int totalMessages = 0;
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+    }
 
-        while (Duration.between(start, Instant.now()).compareTo(targetDuration) < 0) {
+    /**
+     * Runs the load profile for the configured duration on all publishing threads and logs the summary.
+     */
+    public void publishMessages() throws InterruptedException {
+        LoadProfile profile = profile();
+        long durationNanos = TimeUnit.SECONDS.toNanos(publishDurationSec);
+        log.info("Publishing with the {} profile at {} messages/s on {} threads for {}s",
+                profileName, rate, threads, publishDurationSec);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        // The schedule starts once every thread is connected
+        CountDownLatch connected = new CountDownLatch(threads);
+        CompletableFuture<Long> startTime = new CompletableFuture<>();
+        List<Future<Result>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            // Staggered, so the threads don't publish in lockstep
+            long offset = (long) (i * 1e9 / profile.rate(0));
+            workers.add(executor.submit(() -> publish(profile, connected, startTime, offset, durationNanos)));
+        }
+        connected.await();
+        long start = System.nanoTime();
+        startTime.complete(start);
+
+        long published = 0;
+        long failed = 0;
+        Histogram latency = new Histogram(3);
+        try {
+            for (Future<Result> worker : workers) {
+                Result result = worker.get();
+                published += result.published();
+                failed += result.failed();
+                latency.add(result.latencyMicros());
+            }
+        } catch (ExecutionException e) {
+            // The totals would miss the failed thread and whatever the others publish after this, no summary
+            log.error("Load run aborted, a publishing thread failed, the offered load was not reached", e.getCause());
+            return;
+        } finally {
+            executor.shutdownNow();
+        }
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        log.info("Total messages published: {}, failed: {}, target: {}",
+                published, failed, targetMessages(profile));
+        log.info("Achieved rate: {} messages/s in {}s, target: {} messages/s ({} profile, {} threads)",
+                Math.round(published / elapsedSec), String.format("%.1f", elapsedSec), rate, profileName, threads);
+        log.info("Publish latency from the intended send time (ms): p50={} p99={} p999={} max={}",
+                millis(latency.getValueAtPercentile(50)), millis(latency.getValueAtPercentile(99)),
+                millis(latency.getValueAtPercentile(99.9)), millis(latency.getMaxValue()));
+    }
 
-            List<String> messages = new ArrayList<>();
+    private Result publish(LoadProfile profile, CountDownLatch connected, CompletableFuture<Long> startTime,
+                           long offset, long durationNanos) {
+        Histogram latency = new Histogram(3);
+        long published = 0;
+        long failed = 0;
+        MessageGenerator generator = new MessageGenerator(batchSize);
+        long[] intended = new long[batchSize];
+
+        ByteBatch openedBatch;
+        try {
+            // Connects before the clock starts
+            openedBatch = publisher.openByteBatch();
+        } finally {
+            connected.countDown();
+        }
 
-            for (int i = 0; i < batchSize; i++) {
-                messages.add(String.format("{\"message_id\":\"%s\"}", UUID.randomUUID()));
+        try (ByteBatch byteBatch = openedBatch) {
+            long start = startTime.join();
+            long end = start + durationNanos;
+            long next = start + offset;
+            // Interrupted once the run is aborted
+            while (next < end && !stopped && !Thread.currentThread().isInterrupted()) {
+                long now = System.nanoTime();
+                if (next > now) {
+                    LockSupport.parkNanos(next - now);
+                    continue;
+                }
+                int count = 0;
+                while (next <= now && next < end && count < batchSize) {
+                    intended[count] = next;
+                    generator.next(count++);
+                    next += (long) (1e9 * threads / profile.rate((next - start) / 1_000_000));
+                }
+                try {
+                    byteBatch.publish(generator.buffers(), count);
+                    long done = System.nanoTime();
+                    for (int i = 0; i < count; i++) {
+                        latency.recordValue((done - intended[i]) / 1_000);
+                    }
+                    published += count;
+                } catch (Exception e) {
+                    log.warn("Failed to publish a batch of {} messages: {}", count, e.getMessage());
+                    failed += count;
+                }
             }
+        }
+        return new Result(published, failed, latency);
+    }
 
-            publisher.publishBatch(messages);
-
-            totalMessages += batchSize;
+    private LoadProfile profile() {
+        if (threads <= 0) {
+            throw new IllegalArgumentException("redis.load.threads must be positive");
+        }
+        return switch (profileName) {
+            case LoadProfile.CONSTANT -> LoadProfile.constant(rate);
+            case LoadProfile.STEP -> LoadProfile.step(rate, stepCount, TimeUnit.SECONDS.toMillis(publishDurationSec));
+            case LoadProfile.BURST -> LoadProfile.burst(rate, burstFactor, burstIntervalMs, burstDurationMs);
+            default -> throw new IllegalArgumentException("Unknown redis.load.profile: " + profileName);
+        };
+    }
 
-            long sleepMillis = ThreadLocalRandom.current().nextLong(throttleMinMs, throttleMaxMs);
-            Thread.sleep(sleepMillis);
+    private long targetMessages(LoadProfile profile) {
+        double messages = 0;
+        for (long ms = 0; ms < TimeUnit.SECONDS.toMillis(publishDurationSec); ms++) {
+            messages += profile.rate(ms) / 1000;
         }
+        return Math.round(messages);
+    }
 
-        log.info("Total messages published: {}", totalMessages);
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
     }
 }
@@ -0,0 +1,40 @@
+package com.producer.load;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LoadProfileTest {
+
+    @Test
+    void testStepRampsUpToTheRate() {
+        LoadProfile profile = LoadProfile.step(1000, 4, 20_000);
+
+        assertEquals(250, profile.rate(0));
+        assertEquals(250, profile.rate(4_999));
+        assertEquals(500, profile.rate(5_000));
+        assertEquals(1000, profile.rate(19_999));
+        // Stays at the rate if the run takes longer
+        assertEquals(1000, profile.rate(60_000));
+    }
+
+    @Test
+    void testBurstMultipliesTheRateAtTheInterval() {
+        LoadProfile profile = LoadProfile.burst(1000, 5, 10_000, 1_000);
+
+        assertEquals(5000, profile.rate(0));
+        assertEquals(1000, profile.rate(1_000));
+        assertEquals(5000, profile.rate(10_500));
+        assertEquals(1000, profile.rate(19_999));
+    }
+
+    @Test
+    void testProfileWithoutARateOrScheduleIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.constant(0));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.step(1000, 0, 20_000));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.step(0, 4, 20_000));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.burst(1000, 5, 0, 1_000));
+        assertThrows(IllegalArgumentException.class, () -> LoadProfile.burst(0, 5, 10_000, 1_000));
+    }
+}
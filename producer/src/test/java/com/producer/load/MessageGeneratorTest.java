@@ -0,0 +1,37 @@
+package com.producer.load;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageGeneratorTest {
+
+    @Test
+    void testWritesRandomUuidMessagesIntoTheSlots() {
+        MessageGenerator generator = new MessageGenerator(2, new SplittableRandom(42));
+        Set<UUID> ids = new HashSet<>();
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] message = generator.next(i % 2);
+            assertSame(generator.buffers()[i % 2], message);
+
+            String json = new String(message, StandardCharsets.US_ASCII);
+            assertTrue(json.startsWith("{\"message_id\":\"") && json.endsWith("\"}"), json);
+            String id = json.substring(15, json.length() - 2);
+            UUID uuid = UUID.fromString(id);
+            assertEquals(id, uuid.toString());
+            assertEquals(4, uuid.version());
+            assertEquals(2, uuid.variant());
+            ids.add(uuid);
+        }
+        assertEquals(1000, ids.size());
+    }
+}